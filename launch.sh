@@ -0,0 +1,28 @@
+#!/bin/sh
+# Starts the application jar with JVM flags sized for a small instance (app.yaml, App Engine F2) and the lowmem profile.
+# JAR, JAVA_MAX_HEAP and SPRING_PROFILES_ACTIVE can be overridden, further arguments are passed to the application,
+# e.g. JAR=build/libs/soprafs24.jar ./launch.sh --server.port=8081
+#
+# -XX:+UseSerialGC                  a single collector thread and no per-region bookkeeping, the instance has one core
+# -Xms / -Xmx                       the heap starts small and is capped well below the memory of the instance
+# -XX:MinHeapFreeRatio/MaxHeapFreeRatio  the heap is given back after a load peak instead of staying committed
+# -XX:MaxMetaspaceSize              classes of Spring, Hibernate and Tomcat, capped so a leak fails fast
+# -XX:ReservedCodeCacheSize         JIT compiled code, 240 MB are reserved by default
+# -XX:MaxDirectMemorySize           NIO buffers of Tomcat and the HTTP client
+# -Xss                              stack of every thread, the request paths are shallow
+# -XX:+ExitOnOutOfMemoryError       a JVM out of memory is restarted by the platform instead of limping along
+
+JAR=${JAR:-build/libs/soprafs24.jar}
+JAVA_MAX_HEAP=${JAVA_MAX_HEAP:-256m}
+export SPRING_PROFILES_ACTIVE=${SPRING_PROFILES_ACTIVE:-lowmem}
+
+exec java \
+  -XX:+UseSerialGC \
+  -Xms64m -Xmx"$JAVA_MAX_HEAP" \
+  -XX:MinHeapFreeRatio=10 -XX:MaxHeapFreeRatio=30 \
+  -XX:MaxMetaspaceSize=128m \
+  -XX:ReservedCodeCacheSize=64m \
+  -XX:MaxDirectMemorySize=32m \
+  -Xss512k \
+  -XX:+ExitOnOutOfMemoryError \
+  -jar "$JAR" "$@"
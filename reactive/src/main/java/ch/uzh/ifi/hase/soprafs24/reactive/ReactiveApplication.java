@@ -0,0 +1,55 @@
+package ch.uzh.ifi.hase.soprafs24.reactive;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive variant of the Application
+ * Serves the same user API on WebFlux with a non-blocking R2DBC repository, so
+ * the number of concurrent requests is no longer bound to a thread per request.
+ */
+@RestController
+@SpringBootApplication
+public class ReactiveApplication {
+
+  public static void main(String[] args) {
+    SpringApplication.run(ReactiveApplication.class, args);
+  }
+
+  @GetMapping(value = "/", produces = MediaType.TEXT_PLAIN_VALUE)
+  @ResponseStatus(HttpStatus.OK)
+  public Mono<String> helloWorld() {
+    return Mono.just("The application is running.");
+  }
+
+  @Bean
+  public ConnectionFactoryInitializer schemaInitializer(ConnectionFactory connectionFactory) {
+    ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
+    initializer.setConnectionFactory(connectionFactory);
+    initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("schema.sql")));
+    return initializer;
+  }
+
+  @Bean
+  public WebFluxConfigurer corsConfigurer() {
+    return new WebFluxConfigurer() {
+      @Override
+      public void addCorsMappings(CorsRegistry registry) {
+        registry.addMapping("/**").allowedOrigins("*").allowedMethods("*");
+      }
+    };
+  }
+}
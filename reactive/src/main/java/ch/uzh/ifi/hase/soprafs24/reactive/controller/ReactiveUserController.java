@@ -0,0 +1,96 @@
+package ch.uzh.ifi.hase.soprafs24.reactive.controller;
+
+import ch.uzh.ifi.hase.soprafs24.reactive.entity.ReactiveUser;
+import ch.uzh.ifi.hase.soprafs24.reactive.service.ReactiveUserService;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive User Controller
+ * Exposes the same routes, request and response bodies and status codes as the
+ * UserController of the servlet application.
+ */
+@RestController
+public class ReactiveUserController {
+
+    private final ReactiveUserService userService;
+
+    ReactiveUserController(ReactiveUserService userService) {
+        this.userService = userService;
+    }
+
+    //Get a list of all users
+    @GetMapping("/users")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<UserGetDTO> getAllUsers() {
+        return userService.getUsers().map(ReactiveUserController::toUserGetDTO);
+    }
+
+    //Create a user with a username and password the creationdate, token and id are automatically generated and stored
+    @PostMapping("/users")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<UserGetDTO> createUser(@RequestBody UserPostDTO userPostDTO) {
+        return userService.createUser(toUser(userPostDTO)).map(ReactiveUserController::toUserGetDTO);
+    }
+
+    //check the login credentials and return the user including the token
+    @PostMapping("/checkUser")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<UserGetDTO> checkUser(@RequestBody UserPostDTO userPostDTO) {
+        return userService.loginUser(toUser(userPostDTO)).map(ReactiveUserController::toUserGetDTO);
+    }
+
+    // returns if the token and id are a match or not
+    @PostMapping("/checkUser/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Boolean> checkToken(@RequestBody UserPostDTO userPostDTO, @PathVariable Long id) {
+        return userService.tokenCheck(toUser(userPostDTO), id);
+    }
+
+    // returns the user for which the id provided matches
+    @GetMapping("/users/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<UserGetDTO> getUser(@PathVariable Long id) {
+        return userService.getUser(id).map(ReactiveUserController::toUserGetDTO);
+    }
+
+    //changes status for the user that was provided via the token
+    @PutMapping("/status")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> changeStatus(@RequestBody UserPostDTO userPostDTO) {
+        return userService.changeStatus(toUser(userPostDTO));
+    }
+
+    //changes user related values such as username or birthday
+    @PutMapping("/users/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> changeUser(@RequestBody UserPostDTO userPostDTO, @PathVariable Long id) {
+        return userService.changeUser(toUser(userPostDTO), id);
+    }
+
+    private static ReactiveUser toUser(UserPostDTO userPostDTO) {
+        ReactiveUser user = new ReactiveUser();
+        user.setId(userPostDTO.getId());
+        user.setUsername(userPostDTO.getUsername());
+        user.setPassword(userPostDTO.getPassword());
+        user.setToken(userPostDTO.getToken());
+        user.setStatus(userPostDTO.getStatus());
+        user.setBirthday(userPostDTO.getBirthday());
+        return user;
+    }
+
+    private static UserGetDTO toUserGetDTO(ReactiveUser user) {
+        UserGetDTO userGetDTO = new UserGetDTO();
+        userGetDTO.setId(user.getId());
+        userGetDTO.setUsername(user.getUsername());
+        userGetDTO.setStatus(user.getStatus());
+        userGetDTO.setToken(user.getToken());
+        userGetDTO.setCreationDate(user.getCreationDate());
+        userGetDTO.setBirthday(user.getBirthday());
+        return userGetDTO;
+    }
+}
@@ -0,0 +1,99 @@
+package ch.uzh.ifi.hase.soprafs24.reactive.entity;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDate;
+
+/**
+ * Internal User Representation of the reactive variant
+ * Mapped by Spring Data R2DBC onto the USER table created by schema.sql, which
+ * mirrors the constraints of the JPA User (unique username and token).
+ */
+@Table("USER")
+public class ReactiveUser {
+
+  @Id
+  private Long id;
+
+  private String password;
+
+  private String username;
+
+  private String token;
+
+  private UserStatus status;
+
+  private LocalDate creationDate;
+
+  private LocalDate birthday;
+
+  @Version
+  private Long version;
+
+  public Long getId() {
+    return id;
+  }
+
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  public String getPassword() {
+    return password;
+  }
+
+  public void setPassword(String password) {
+    this.password = password;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public void setUsername(String username) {
+    this.username = username;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
+  public void setToken(String token) {
+    this.token = token;
+  }
+
+  public UserStatus getStatus() {
+    return status;
+  }
+
+  public void setStatus(UserStatus status) {
+    this.status = status;
+  }
+
+  public LocalDate getCreationDate() {
+    return creationDate;
+  }
+
+  public void setCreationDate(LocalDate creationDate) {
+    this.creationDate = creationDate;
+  }
+
+  public LocalDate getBirthday() {
+    return birthday;
+  }
+
+  public void setBirthday(LocalDate birthday) {
+    this.birthday = birthday;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+}
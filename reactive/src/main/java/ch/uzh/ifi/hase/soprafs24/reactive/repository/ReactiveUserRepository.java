@@ -0,0 +1,13 @@
+package ch.uzh.ifi.hase.soprafs24.reactive.repository;
+
+import ch.uzh.ifi.hase.soprafs24.reactive.entity.ReactiveUser;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository("reactiveUserRepository")
+public interface ReactiveUserRepository extends ReactiveCrudRepository<ReactiveUser, Long> {
+  Mono<ReactiveUser> findByUsername(String username);
+
+  Mono<ReactiveUser> findByToken(String token);
+}
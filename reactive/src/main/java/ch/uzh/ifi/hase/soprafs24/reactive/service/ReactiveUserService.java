@@ -0,0 +1,149 @@
+package ch.uzh.ifi.hase.soprafs24.reactive.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.reactive.entity.ReactiveUser;
+import ch.uzh.ifi.hase.soprafs24.reactive.repository.ReactiveUserRepository;
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Reactive User Service
+ * Non-blocking counterpart of the UserService with the same rules (see
+ * UserRules) and the same answers. Updates are retried on optimistic lock
+ * failures just like in the servlet application.
+ */
+@Service
+public class ReactiveUserService {
+
+  private final ReactiveUserRepository userRepository;
+
+  private final Retry optimisticRetry;
+
+  public ReactiveUserService(@Qualifier("reactiveUserRepository") ReactiveUserRepository userRepository,
+                             @Value("${users.update.max-attempts:5}") int maxAttempts,
+                             @Value("${users.update.backoff-ms:2}") long backoffMillis) {
+    this.userRepository = userRepository;
+    this.optimisticRetry = Retry.backoff(maxAttempts - 1, Duration.ofMillis(Math.max(1, backoffMillis)))
+        .filter(OptimisticLockingFailureException.class::isInstance)
+        .onRetryExhaustedThrow((spec, signal) ->
+            new ResponseStatusException(HttpStatus.CONFLICT, "User was modified concurrently, please retry", signal.failure()));
+  }
+
+  public Flux<ReactiveUser> getUsers() {
+    return userRepository.findAll();
+  }
+
+  public Mono<ReactiveUser> createUser(ReactiveUser newUser) {
+    newUser.setToken(UUID.randomUUID().toString());
+    newUser.setStatus(UserStatus.ONLINE);
+    newUser.setCreationDate(LocalDate.now());
+    return checkIfUserExists(newUser.getUsername())
+        .then(Mono.defer(() -> {
+          if (UserRules.isUsernameTooLong(newUser.getUsername())) {
+            return Mono.<ReactiveUser>error(new ResponseStatusException(HttpStatus.BAD_REQUEST, UserRules.USERNAME_TOO_LONG));
+          }
+          return userRepository.save(newUser);
+        }))
+        .onErrorMap(DataIntegrityViolationException.class, this::usernameExists);
+  }
+
+  public Mono<ReactiveUser> loginUser(ReactiveUser checkUser) {
+    return Mono.defer(() -> userRepository.findByUsername(checkUser.getUsername()))
+        .filter(user -> user.getPassword().equals(checkUser.getPassword()))
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, UserRules.WRONG_CREDENTIALS)))
+        .flatMap(user -> {
+          //login user and set him to be online
+          user.setStatus(UserStatus.ONLINE);
+          return userRepository.save(user);
+        })
+        .retryWhen(optimisticRetry);
+  }
+
+  public Mono<ReactiveUser> getUser(Long id) {
+    return userRepository.findById(id)
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with ID: " + id)));
+  }
+
+  public Mono<Void> changeStatus(ReactiveUser user) {
+    return Mono.defer(() -> findByToken(user.getToken()))
+        .flatMap(userByToken -> {
+          userByToken.setStatus(user.getStatus());
+          return userRepository.save(userByToken);
+        })
+        .retryWhen(optimisticRetry)
+        .then();
+  }
+
+  // changes all changeable properties of the user, creationdate, token and id aren't allowed to be changed
+  public Mono<Void> changeUser(ReactiveUser user, Long id) {
+    return Mono.defer(() -> tokenCheck(user, id))
+        .flatMap(authenticated -> authenticated
+            ? findByToken(user.getToken())
+            : Mono.<ReactiveUser>error(new ResponseStatusException(HttpStatus.NOT_FOUND, UserRules.NOT_AUTHENTICATED)))
+        .flatMap(userByToken -> applyUsername(userByToken, user.getUsername()))
+        .flatMap(userByToken -> {
+          if (!Objects.equals(userByToken.getPassword(), user.getPassword()) && UserRules.isProvided(user.getPassword())) {
+            userByToken.setPassword(user.getPassword());
+          }
+          if (!Objects.equals(userByToken.getStatus(), user.getStatus()) && user.getStatus() != null) {
+            userByToken.setStatus(user.getStatus());
+          }
+          if (!Objects.equals(userByToken.getBirthday(), user.getBirthday())) {
+            userByToken.setBirthday(user.getBirthday());
+          }
+          return userRepository.save(userByToken);
+        })
+        .retryWhen(optimisticRetry)
+        .onErrorMap(DataIntegrityViolationException.class, this::usernameExists)
+        .then();
+  }
+
+  //checks if token matches the id
+  public Mono<Boolean> tokenCheck(ReactiveUser user, Long id) {
+    return userRepository.findById(id)
+        .flatMap(userById -> userRepository.findByToken(user.getToken())
+            .map(userByToken -> UserRules.tokenMatches(userByToken.getPassword(), userById.getPassword())))
+        .defaultIfEmpty(false);
+  }
+
+  private Mono<ReactiveUser> applyUsername(ReactiveUser userByToken, String username) {
+    if (Objects.equals(userByToken.getUsername(), username) || !UserRules.isProvided(username)) {
+      return Mono.just(userByToken);
+    }
+    return checkIfUserExists(username).then(Mono.defer(() -> {
+      if (UserRules.isUsernameTooLong(username)) {
+        return Mono.<ReactiveUser>error(new ResponseStatusException(HttpStatus.BAD_REQUEST, UserRules.USERNAME_TOO_LONG));
+      }
+      userByToken.setUsername(username);
+      return Mono.just(userByToken);
+    }));
+  }
+
+  private Mono<Void> checkIfUserExists(String username) {
+    return userRepository.findByUsername(username)
+        .flatMap(existing -> Mono.<Void>error(new ResponseStatusException(HttpStatus.CONFLICT, UserRules.USERNAME_EXISTS)));
+  }
+
+  private Mono<ReactiveUser> findByToken(String token) {
+    return userRepository.findByToken(token)
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, UserRules.USER_NOT_FOUND)));
+  }
+
+  private ResponseStatusException usernameExists(DataIntegrityViolationException e) {
+    return new ResponseStatusException(HttpStatus.CONFLICT, UserRules.USERNAME_EXISTS, e);
+  }
+}
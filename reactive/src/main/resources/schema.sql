@@ -0,0 +1,10 @@
+CREATE TABLE IF NOT EXISTS USER (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  password VARCHAR(255) NOT NULL,
+  username VARCHAR(255) NOT NULL UNIQUE,
+  token VARCHAR(255) NOT NULL UNIQUE,
+  status VARCHAR(16) NOT NULL,
+  creation_date DATE NOT NULL,
+  birthday DATE,
+  version BIGINT NOT NULL
+);
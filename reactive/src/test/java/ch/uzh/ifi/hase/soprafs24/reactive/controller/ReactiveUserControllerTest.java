@@ -0,0 +1,116 @@
+package ch.uzh.ifi.hase.soprafs24.reactive.controller;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.reactive.repository.ReactiveUserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the reactive variant against its in-memory H2 and checks that it answers
+ * like the UserController of the servlet application.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ReactiveUserControllerTest {
+
+  @Autowired
+  private WebTestClient webTestClient;
+
+  @Autowired
+  private ReactiveUserRepository userRepository;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll().block();
+  }
+
+  @Test
+  public void createUser_validInput_then201() {
+    UserGetDTO createdUser = createUser("testUsername");
+
+    assertNotNull(createdUser.getId());
+    assertNotNull(createdUser.getToken());
+    assertEquals("testUsername", createdUser.getUsername());
+    assertEquals(UserStatus.ONLINE, createdUser.getStatus());
+    assertNotNull(createdUser.getCreationDate());
+  }
+
+  @Test
+  public void createUser_duplicateUsername_then409() {
+    createUser("testUsername");
+
+    webTestClient.post().uri("/users").bodyValue(userPostDTO("testUsername", null))
+        .exchange()
+        .expectStatus().isEqualTo(409);
+  }
+
+  @Test
+  public void createUser_usernameTooLong_then400() {
+    webTestClient.post().uri("/users").bodyValue(userPostDTO("aUsernameLongerThan20Chars", null))
+        .exchange()
+        .expectStatus().isBadRequest();
+  }
+
+  @Test
+  public void getUser_unknownId_then404() {
+    webTestClient.get().uri("/users/{id}", 4711)
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  @Test
+  public void changeUser_validToken_then204() {
+    UserGetDTO createdUser = createUser("testUsername");
+
+    webTestClient.put().uri("/users/{id}", createdUser.getId()).bodyValue(userPostDTO("renamedUser", createdUser.getToken()))
+        .exchange()
+        .expectStatus().isNoContent();
+
+    webTestClient.get().uri("/users/{id}", createdUser.getId())
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.username").isEqualTo("renamedUser");
+  }
+
+  @Test
+  public void changeUser_wrongToken_then404() {
+    UserGetDTO createdUser = createUser("testUsername");
+
+    webTestClient.put().uri("/users/{id}", createdUser.getId()).bodyValue(userPostDTO("renamedUser", "wrongToken"))
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  @Test
+  public void checkToken_matchingToken_thenTrue() {
+    UserGetDTO createdUser = createUser("testUsername");
+
+    webTestClient.post().uri("/checkUser/{id}", createdUser.getId()).bodyValue(userPostDTO(null, createdUser.getToken()))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(Boolean.class).isEqualTo(true);
+  }
+
+  private UserGetDTO createUser(String username) {
+    return webTestClient.post().uri("/users").bodyValue(userPostDTO(username, null))
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody(UserGetDTO.class)
+        .returnResult()
+        .getResponseBody();
+  }
+
+  private UserPostDTO userPostDTO(String username, String token) {
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setUsername(username);
+    userPostDTO.setPassword("password");
+    userPostDTO.setToken(token);
+    return userPostDTO;
+  }
+}
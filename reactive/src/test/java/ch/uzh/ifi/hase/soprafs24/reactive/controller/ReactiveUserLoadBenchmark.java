@@ -0,0 +1,72 @@
+package ch.uzh.ifi.hase.soprafs24.reactive.controller;
+
+import ch.uzh.ifi.hase.soprafs24.load.HttpLoadDriver;
+import ch.uzh.ifi.hase.soprafs24.reactive.entity.ReactiveUser;
+import ch.uzh.ifi.hase.soprafs24.reactive.repository.ReactiveUserRepository;
+import ch.uzh.ifi.hase.soprafs24.reactive.service.ReactiveUserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load benchmark of the reactive variant. Runs the same scenario as the
+ * UserLoadBenchmark of the servlet application: POST /checkUser/{id} (two
+ * lookups in the database per request, round-robin over the users) at
+ * increasing concurrency.
+ * Run with ./gradlew benchmark :reactive:benchmark and compare the rows of
+ * build/benchmark/load.csv.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ReactiveUserLoadBenchmark {
+
+  private static final int[] CONCURRENCY = { 64, 256, 1024, 4096 };
+
+  private static final int USERS = 20_000;
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private ReactiveUserRepository userRepository;
+
+  @Autowired
+  private ReactiveUserService userService;
+
+  @Test
+  public void checkToken() throws Exception {
+    userRepository.deleteAll().block();
+    List<ReactiveUser> users = new ArrayList<>();
+    for (int i = 0; i < USERS; i++) {
+      ReactiveUser user = new ReactiveUser();
+      user.setUsername("loadUser" + i);
+      user.setPassword("password");
+      users.add(userService.createUser(user).block());
+    }
+
+    AtomicInteger next = new AtomicInteger();
+    HttpLoadDriver driver = new HttpLoadDriver();
+    try {
+      for (int concurrency : CONCURRENCY) {
+        driver.run("reactive", concurrency, Duration.ofSeconds(10), () -> {
+          ReactiveUser user = users.get(Math.floorMod(next.getAndIncrement(), USERS));
+          return HttpRequest.newBuilder(HttpLoadDriver.uri(port, "/checkUser/" + user.getId()))
+              .header("Content-Type", "application/json")
+              .POST(HttpRequest.BodyPublishers.ofString("{\"token\":\"" + user.getToken() + "\"}"))
+              .build();
+        });
+      }
+    }
+    finally {
+      driver.close();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs24;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tomcat Buffer Customizer
+ * Sizes the socket buffers Tomcat allocates for every connection and the pool
+ * of buffers it keeps for reuse, which Spring Boot has no properties for. Both
+ * are left at Tomcat's defaults unless configured (see the lowmem profile).
+ */
+@Component
+public class TomcatBufferCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+  private final int socketBufferBytes;
+
+  private final int bufferPool;
+
+  public TomcatBufferCustomizer(@Value("${users.tomcat.socket-buffer-bytes:0}") int socketBufferBytes,
+                                @Value("${users.tomcat.buffer-pool:-1}") int bufferPool) {
+    this.socketBufferBytes = socketBufferBytes;
+    this.bufferPool = bufferPool;
+  }
+
+  @Override
+  public void customize(TomcatServletWebServerFactory factory) {
+    factory.addConnectorCustomizers(connector -> {
+      if (socketBufferBytes > 0) {
+        connector.setProperty("socket.appReadBufSize", Integer.toString(socketBufferBytes));
+        connector.setProperty("socket.appWriteBufSize", Integer.toString(socketBufferBytes));
+      }
+      if (bufferPool >= 0) {
+        connector.setProperty("socket.bufferPool", Integer.toString(bufferPool));
+      }
+    });
+  }
+}
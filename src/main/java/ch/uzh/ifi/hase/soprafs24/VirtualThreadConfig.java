@@ -0,0 +1,29 @@
+package ch.uzh.ifi.hase.soprafs24;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Virtual Thread Config
+ * With users.virtual-threads.enabled (the virtual profile, needs Java 21) every
+ * request runs on a virtual thread of its own instead of one of Tomcat's pooled
+ * platform threads. The UserController and the UserService are unchanged, but
+ * a request blocked on the database no longer ties up a platform thread: the
+ * requests in flight are bounded by server.tomcat.max-connections and the
+ * bulkheads of the UserDbGuard instead of server.tomcat.threads.max.
+ */
+@Configuration
+@ConditionalOnProperty(name = "users.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadExecutorCustomizer() {
+    if (!VirtualThreads.isSupported()) {
+      // fails at startup instead of silently running on platform threads
+      throw new IllegalStateException("users.virtual-threads.enabled needs Java 21 or later, running on " + Runtime.version());
+    }
+    return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-virtual-"));
+  }
+}
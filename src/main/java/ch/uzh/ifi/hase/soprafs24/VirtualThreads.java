@@ -0,0 +1,67 @@
+package ch.uzh.ifi.hase.soprafs24;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual Threads
+ * The virtual threads of Java 21 for code that is compiled for Java 17 (see
+ * the virtualThreads mode in build.gradle): their API is looked up at runtime.
+ * On older runtimes isSupported is false and no thread is virtual.
+ */
+public final class VirtualThreads {
+
+  // Thread.isVirtual, null before Java 21
+  private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+  private VirtualThreads() {
+  }
+
+  public static boolean isSupported() {
+    return IS_VIRTUAL != null;
+  }
+
+  public static boolean isVirtual(Thread thread) {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (boolean) IS_VIRTUAL.invokeExact(thread);
+    }
+    catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  //an executor starting a virtual thread named <prefix><n> for every task
+  public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+    if (!isSupported()) {
+      throw new IllegalStateException("Virtual threads need Java 21 or later, running on " + Runtime.version());
+    }
+    try {
+      // Thread.ofVirtual().name(namePrefix, 0).factory()
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+      ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+      return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+          .invoke(null, factory);
+    }
+    catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Creating virtual threads failed", e);
+    }
+  }
+
+  private static MethodHandle isVirtualHandle() {
+    try {
+      return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+    }
+    catch (NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+}
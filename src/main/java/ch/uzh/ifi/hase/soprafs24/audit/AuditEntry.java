@@ -0,0 +1,28 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AuditEventType;
+
+/**
+ * Preallocated slot of the AuditRingBuffer. The slots are reused, so an entry
+ * is only valid until the consumer moved past it.
+ */
+final class AuditEntry {
+
+  long timestamp;
+
+  AuditEventType type;
+
+  Long userId;
+
+  String username;
+
+  boolean success;
+
+  void set(long timestamp, AuditEventType type, Long userId, String username, boolean success) {
+    this.timestamp = timestamp;
+    this.type = type;
+    this.userId = userId;
+    this.username = username;
+    this.success = success;
+  }
+}
@@ -0,0 +1,124 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Audit File Writer
+ * Appends audit lines to audit.log in the configured directory. Once the file
+ * would grow beyond the maximum size it is renamed to audit-<timestamp>.log and a
+ * new one is started, keeping at most maxFiles rolled files.
+ * Not thread-safe, only used by the audit consumer thread.
+ */
+public class AuditFileWriter implements Closeable {
+
+  static final String ACTIVE_FILE = "audit.log";
+
+  private final Path directory;
+
+  private final long maxFileBytes;
+
+  private final int maxFiles;
+
+  private final FsyncPolicy fsyncPolicy;
+
+  private final long fsyncIntervalMillis;
+
+  private FileChannel channel;
+
+  private long size;
+
+  private long lastFsync;
+
+  private boolean unsynced;
+
+  // read by other threads for monitoring
+  private volatile long fsyncs;
+
+  public AuditFileWriter(Path directory, long maxFileBytes, int maxFiles, FsyncPolicy fsyncPolicy,
+                         long fsyncIntervalMillis) throws IOException {
+    this.directory = directory;
+    this.maxFileBytes = maxFileBytes;
+    this.maxFiles = maxFiles;
+    this.fsyncPolicy = fsyncPolicy;
+    this.fsyncIntervalMillis = fsyncIntervalMillis;
+    Files.createDirectories(directory);
+    open();
+  }
+
+  public void write(ByteBuffer line) throws IOException {
+    if (size > 0 && size + line.remaining() > maxFileBytes) {
+      roll();
+    }
+    while (line.hasRemaining()) {
+      size += channel.write(line);
+    }
+    unsynced = true;
+  }
+
+  //called by the consumer after every batch and while it is idle
+  public void endOfBatch() throws IOException {
+    if (!unsynced) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (fsyncPolicy == FsyncPolicy.BATCH
+        || (fsyncPolicy == FsyncPolicy.INTERVAL && now - lastFsync >= fsyncIntervalMillis)) {
+      channel.force(false);
+      lastFsync = now;
+      unsynced = false;
+      fsyncs++;
+    }
+  }
+
+  long getFsyncs() {
+    return fsyncs;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (fsyncPolicy != FsyncPolicy.NEVER && unsynced) {
+      channel.force(false);
+    }
+    channel.close();
+  }
+
+  private void open() throws IOException {
+    channel = FileChannel.open(directory.resolve(ACTIVE_FILE),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    size = channel.size();
+  }
+
+  private void roll() throws IOException {
+    close();
+    unsynced = false;
+    Path rolled = directory.resolve("audit-" + System.currentTimeMillis() + ".log");
+    Files.move(directory.resolve(ACTIVE_FILE), rolled, StandardCopyOption.REPLACE_EXISTING);
+    deleteOldFiles();
+    open();
+  }
+
+  private void deleteOldFiles() throws IOException {
+    List<Path> rolledFiles = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "audit-*.log")) {
+      for (Path path : stream) {
+        rolledFiles.add(path);
+      }
+    }
+    // the timestamp in the name sorts them from oldest to newest
+    Collections.sort(rolledFiles);
+    for (int i = 0; i < rolledFiles.size() - maxFiles; i++) {
+      Files.deleteIfExists(rolledFiles.get(i));
+    }
+  }
+}
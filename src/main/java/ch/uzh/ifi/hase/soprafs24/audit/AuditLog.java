@@ -0,0 +1,235 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AuditEventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit Log
+ * Structured audit trail of registrations, logins and profile changes. Request
+ * threads only put the event into the AuditRingBuffer; a single background
+ * consumer formats the entries as JSON lines and writes them in batches with
+ * the AuditFileWriter. If the consumer cannot keep up, events are dropped and
+ * counted rather than slowing down the requests.
+ */
+@Component
+public class AuditLog {
+
+  private final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+  private final boolean enabled;
+
+  private final AuditRingBuffer ringBuffer;
+
+  private final String directory;
+
+  private final long maxFileBytes;
+
+  private final int maxFiles;
+
+  private final FsyncPolicy fsyncPolicy;
+
+  private final long fsyncIntervalMillis;
+
+  private final int batchSize;
+
+  // reused by the consumer thread for formatting
+  private final StringBuilder line = new StringBuilder(256);
+
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  private ByteBuffer bytes = ByteBuffer.allocate(1024);
+
+  private AuditFileWriter writer;
+
+  private Thread consumer;
+
+  private volatile boolean running;
+
+  private volatile long writeErrors;
+
+  public AuditLog(@Value("${users.audit.enabled:true}") boolean enabled,
+                  @Value("${users.audit.capacity:8192}") int capacity,
+                  @Value("${users.audit.directory:${java.io.tmpdir}/soprafs24/audit}") String directory,
+                  @Value("${users.audit.max-file-bytes:10485760}") long maxFileBytes,
+                  @Value("${users.audit.max-files:10}") int maxFiles,
+                  @Value("${users.audit.fsync:INTERVAL}") FsyncPolicy fsyncPolicy,
+                  @Value("${users.audit.fsync-interval-ms:1000}") long fsyncIntervalMillis,
+                  @Value("${users.audit.batch-size:512}") int batchSize) {
+    this.enabled = enabled;
+    this.ringBuffer = new AuditRingBuffer(capacity);
+    this.directory = directory;
+    this.maxFileBytes = maxFileBytes;
+    this.maxFiles = maxFiles;
+    this.fsyncPolicy = fsyncPolicy;
+    this.fsyncIntervalMillis = fsyncIntervalMillis;
+    this.batchSize = batchSize;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    writer = new AuditFileWriter(Paths.get(directory), maxFileBytes, maxFiles, fsyncPolicy, fsyncIntervalMillis);
+    running = true;
+    consumer = new Thread(this::consume, "audit-log-writer");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException, IOException {
+    if (consumer == null) {
+      return;
+    }
+    running = false;
+    consumer.join(TimeUnit.SECONDS.toMillis(5));
+    writer.close();
+    if (ringBuffer.getDropped() > 0) {
+      log.warn("Audit log dropped {} events", ringBuffer.getDropped());
+    }
+  }
+
+  //never blocks, returns false if the event was dropped
+  public boolean record(AuditEventType type, Long userId, String username, boolean success) {
+    return enabled && ringBuffer.tryPublish(type, userId, username, success);
+  }
+
+  //records the event once the current transaction committed, nothing is recorded if it rolls back
+  public void recordAfterCommit(AuditEventType type, Long userId, String username, boolean success) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      record(type, userId, username, success);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        record(type, userId, username, success);
+      }
+    });
+  }
+
+  public long getDropped() {
+    return ringBuffer.getDropped();
+  }
+
+  public long getWriteErrors() {
+    return writeErrors;
+  }
+
+  long getFsyncs() {
+    return writer == null ? 0 : writer.getFsyncs();
+  }
+
+  private void consume() {
+    long idleNanos = TimeUnit.MICROSECONDS.toNanos(100);
+    while (running) {
+      if (drainBatch() == 0) {
+        // the last batch of a burst is still forced once the interval is over
+        endOfBatch();
+        // back off up to 10ms while there is nothing to write
+        LockSupport.parkNanos(idleNanos);
+        idleNanos = Math.min(idleNanos * 2, TimeUnit.MILLISECONDS.toNanos(10));
+      }
+      else {
+        idleNanos = TimeUnit.MICROSECONDS.toNanos(100);
+      }
+    }
+    // flush what was published before shutdown
+    while (drainBatch() > 0) {
+      // keep draining
+    }
+  }
+
+  private int drainBatch() {
+    int count = ringBuffer.drain(this::write, batchSize);
+    if (count > 0) {
+      endOfBatch();
+    }
+    return count;
+  }
+
+  private void endOfBatch() {
+    try {
+      writer.endOfBatch();
+    }
+    catch (IOException e) {
+      writeFailed(e);
+    }
+  }
+
+  private void write(AuditEntry entry) {
+    line.setLength(0);
+    line.append("{\"timestamp\":\"").append(Instant.ofEpochMilli(entry.timestamp))
+        .append("\",\"event\":\"").append(entry.type)
+        .append("\",\"userId\":").append(entry.userId)
+        .append(",\"username\":");
+    appendJsonString(entry.username);
+    line.append(",\"success\":").append(entry.success).append("}\n");
+    try {
+      writer.write(encode());
+    }
+    catch (IOException e) {
+      writeFailed(e);
+    }
+  }
+
+  private ByteBuffer encode() {
+    bytes.clear();
+    CharBuffer chars = CharBuffer.wrap(line);
+    while (encoder.reset().encode(chars, bytes, true).isOverflow()) {
+      bytes = ByteBuffer.allocate(bytes.capacity() * 2);
+      chars.rewind();
+    }
+    bytes.flip();
+    return bytes;
+  }
+
+  private void appendJsonString(String value) {
+    if (value == null) {
+      line.append("null");
+      return;
+    }
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      }
+      else if (c < 0x20) {
+        line.append(String.format("\\u%04x", (int) c));
+      }
+      else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+
+  private void writeFailed(IOException e) {
+    // only log the first failure and then every thousandth to not flood the log
+    if (writeErrors++ % 1000 == 0) {
+      log.error("Writing the audit log failed", e);
+    }
+  }
+}
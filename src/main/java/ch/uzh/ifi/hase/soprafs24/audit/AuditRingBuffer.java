@@ -0,0 +1,99 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AuditEventType;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Audit Ring Buffer
+ * Bounded multi-producer, single-consumer ring of preallocated AuditEntry slots.
+ * Producers claim a sequence with a CAS, fill the slot and publish it by writing
+ * the sequence into the slot's marker. They never wait: if the consumer is a
+ * full ring behind, the event is counted as dropped instead.
+ */
+public class AuditRingBuffer {
+
+  private final AuditEntry[] slots;
+
+  private final int mask;
+
+  // sequence that was last published into each slot
+  private final AtomicLongArray published;
+
+  // next sequence a producer can claim
+  private final AtomicLong claimed = new AtomicLong();
+
+  // next sequence the consumer reads, only written by the consumer
+  private volatile long consumed;
+
+  private final LongAdder dropped = new LongAdder();
+
+  public AuditRingBuffer(int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    slots = new AuditEntry[capacity];
+    published = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new AuditEntry();
+      published.set(i, -1);
+    }
+    mask = capacity - 1;
+  }
+
+  public boolean tryPublish(AuditEventType type, Long userId, String username, boolean success) {
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if (sequence - consumed >= slots.length) {
+        dropped.increment();
+        return false;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+    int index = (int) (sequence & mask);
+    slots[index].set(System.currentTimeMillis(), type, userId, username, success);
+    published.lazySet(index, sequence);
+    return true;
+  }
+
+  /**
+   * Hands at most max published entries in order to the handler and releases
+   * their slots afterwards. Must only be called from the consumer thread.
+   *
+   * @return the number of entries handled
+   */
+  public int drain(Consumer<AuditEntry> handler, int max) {
+    long sequence = consumed;
+    int count = 0;
+    while (count < max) {
+      int index = (int) (sequence & mask);
+      if (published.get(index) != sequence) {
+        break;
+      }
+      AuditEntry entry = slots[index];
+      handler.accept(entry);
+      // drop the reference so the slot does not keep the username alive
+      entry.username = null;
+      sequence++;
+      count++;
+    }
+    consumed = sequence;
+    return count;
+  }
+
+  public int capacity() {
+    return slots.length;
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  public long getPublished() {
+    return claimed.get();
+  }
+}
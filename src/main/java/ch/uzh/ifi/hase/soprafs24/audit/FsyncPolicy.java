@@ -0,0 +1,11 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+/**
+ * When the audit log forces its writes to the disk
+ * - NEVER -> left to the operating system
+ * - BATCH -> after every batch written by the consumer
+ * - INTERVAL -> at most once per configured interval
+ */
+public enum FsyncPolicy {
+  NEVER, BATCH, INTERVAL;
+}
@@ -0,0 +1,5 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+public enum AuditEventType {
+  REGISTRATION, LOGIN, LOGIN_FAILED, STATUS_CHANGE, PROFILE_CHANGE;
+}
@@ -0,0 +1,6 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+// kinds of database work, each has its own bulkhead and query timeout
+public enum DbOperation {
+  READ, WRITE, AUTH
+}
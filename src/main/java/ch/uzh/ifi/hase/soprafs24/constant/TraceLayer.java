@@ -0,0 +1,6 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+// layers a traced request passes through, the time of a trace is broken down by them
+public enum TraceLayer {
+  HTTP, JACKSON, MAPPER, SERVICE, REPOSITORY, JDBC, POOL
+}
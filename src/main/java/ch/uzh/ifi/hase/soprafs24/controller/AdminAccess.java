@@ -0,0 +1,37 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Admin Access
+ * Guards the admin endpoints with the token configured in users.admin.token,
+ * sent along in the X-Admin-Token header. Without a configured token the admin
+ * endpoints do not exist (404).
+ */
+@Component
+public class AdminAccess {
+
+  public static final String HEADER = "X-Admin-Token";
+
+  private final byte[] adminToken;
+
+  public AdminAccess(@Value("${users.admin.token:}") String adminToken) {
+    this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+  }
+
+  public void check(String token) {
+    if (adminToken.length == 0) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+    }
+    // constant time comparison, the token must not be guessable from the response time
+    if (token == null || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Admin token required");
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.monitoring.SqlStatementStats;
+import ch.uzh.ifi.hase.soprafs24.monitoring.TraceCollector;
+import ch.uzh.ifi.hase.soprafs24.service.UserReadModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Monitoring Controller
+ * Admin endpoints exposing what the application measures about itself.
+ */
+@RestController
+public class MonitoringController {
+
+    private final SqlStatementStats sqlStatementStats;
+
+    private final UserReadModel userReadModel;
+
+    private final TraceCollector traceCollector;
+
+    private final AdminAccess adminAccess;
+
+    MonitoringController(SqlStatementStats sqlStatementStats, UserReadModel userReadModel, TraceCollector traceCollector,
+                         AdminAccess adminAccess) {
+        this.sqlStatementStats = sqlStatementStats;
+        this.userReadModel = userReadModel;
+        this.traceCollector = traceCollector;
+        this.adminAccess = adminAccess;
+    }
+
+    //SQL statements per endpoint, including how many requests exceeded the budget
+    @GetMapping("/admin/sql-statements")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Map<String, Number>> getSqlStatements(@RequestHeader(value = AdminAccess.HEADER, required = false) String adminToken) {
+        adminAccess.check(adminToken);
+        return sqlStatementStats.snapshot();
+    }
+
+    //users in the read model, its footprint and the result of the last consistency check
+    @GetMapping("/admin/read-model")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Number> getReadModel(@RequestHeader(value = AdminAccess.HEADER, required = false) String adminToken) {
+        adminAccess.check(adminToken);
+        return userReadModel.snapshot();
+    }
+
+    //compares the read model with the USER table right away and replaces it
+    @PostMapping("/admin/read-model/check")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Number> checkReadModel(@RequestHeader(value = AdminAccess.HEADER, required = false) String adminToken) {
+        adminAccess.check(adminToken);
+        userReadModel.check();
+        return userReadModel.snapshot();
+    }
+
+    //the slowest sampled requests of the window with the time spent per layer and their spans
+    @GetMapping("/admin/traces")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Object> getTraces(@RequestHeader(value = AdminAccess.HEADER, required = false) String adminToken,
+                                         @RequestParam(defaultValue = "10") int limit) {
+        adminAccess.check(adminToken);
+        return traceCollector.snapshot(Math.max(0, limit));
+    }
+}
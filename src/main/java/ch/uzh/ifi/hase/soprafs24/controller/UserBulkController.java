@@ -0,0 +1,50 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserImportResultDTO;
+import ch.uzh.ifi.hase.soprafs24.service.UserBulkService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * User Bulk Controller
+ * Admin endpoints for backups and migrations of the USER table as NDJSON.
+ * Both directions are streamed, neither the request nor the response is
+ * buffered in memory.
+ */
+@RestController
+public class UserBulkController {
+
+    private final UserBulkService userBulkService;
+
+    private final AdminAccess adminAccess;
+
+    UserBulkController(UserBulkService userBulkService, AdminAccess adminAccess) {
+        this.userBulkService = userBulkService;
+        this.adminAccess = adminAccess;
+    }
+
+    //streams all users, one JSON object per line
+    @GetMapping("/admin/users/export")
+    public void exportUsers(@RequestHeader(value = AdminAccess.HEADER, required = false) String adminToken,
+                            HttpServletResponse response) throws IOException {
+        adminAccess.check(adminToken);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader("Content-Disposition", "attachment; filename=\"users.ndjson\"");
+        userBulkService.exportUsers(response.getOutputStream());
+    }
+
+    //imports users from an export, returns how many were imported and how fast
+    @PostMapping(value = "/admin/users/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public UserImportResultDTO importUsers(@RequestHeader(value = AdminAccess.HEADER, required = false) String adminToken,
+                                           HttpServletRequest request) throws IOException {
+        adminAccess.check(adminToken);
+        return userBulkService.importUsers(request.getInputStream());
+    }
+}
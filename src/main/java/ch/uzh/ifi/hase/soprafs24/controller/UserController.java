@@ -1,14 +1,22 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.cache.UserJsonCache;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserStatsDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.service.UserCursor;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.ArrayList;
+import javax.servlet.http.HttpServletResponse;
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -21,27 +29,50 @@ import java.util.List;
 @RestController
 public class UserController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UserService userService;
 
-    UserController(UserService userService) {
+    private final UserJsonCache userJsonCache;
+
+    UserController(UserService userService, UserJsonCache userJsonCache) {
         this.userService = userService;
+        this.userJsonCache = userJsonCache;
     }
 
 
-    //Get a list of all users
-    @GetMapping("/users")
+    //Get a list of all users, assembled from the cached JSON of every user
+    //filtered by status and/or paged by a keyset cursor once any of status, sort, after or limit is given,
+    //the cursor of the next page is sent along in the X-Next-Cursor header as long as the page is full
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public List<UserGetDTO> getAllUsers() {
-        // fetch all users in the internal representation
-        List<User> users = userService.getUsers();
-        List<UserGetDTO> userGetDTOs = new ArrayList<>();
-
-        // convert each user to the API representation
-        for (User user : users) {
-            userGetDTOs.add(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+    public byte[] getAllUsers(@RequestParam(required = false) UserStatus status,
+                              @RequestParam(required = false) String sort,
+                              @RequestParam(required = false) String after,
+                              @RequestParam(required = false) Integer limit,
+                              HttpServletResponse response) {
+        long stamp = userJsonCache.stamp();
+        if (status == null && sort == null && after == null && limit == null) {
+            // fetch all users in the internal representation
+            List<User> users = userService.getUsers();
+            // convert each user to the API representation unless it is cached already
+            return userJsonCache.encodeAll(users, stamp);
         }
-        return userGetDTOs;
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        UserCursor cursor = UserCursor.parse(sort, after);
+        List<User> users = userService.getUsers(status, cursor, pageSize);
+        if (users.size() == pageSize) {
+            response.setHeader(NEXT_CURSOR_HEADER, UserCursor.encode(cursor.getSort(), users.get(users.size() - 1)));
+        }
+        return userJsonCache.encodeAll(users, stamp);
     }
 
     //Create a user with a username and password the creationdate, token and id are automatically generated and stored
@@ -82,15 +113,39 @@ public class UserController {
         return userService.tokenCheck(userInput,id);
     }
 
-    // returns the user for which the id provided matches
-    @GetMapping("/users/{id}")
+    //users with a birthday within the next days (7 by default) starting at from (today by default)
+    @GetMapping(value = "/users/birthdays", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public byte[] getBirthdays(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                               @RequestParam(defaultValue = "7") int days) {
+        long stamp = userJsonCache.stamp();
+        List<User> users = userService.getBirthdays(from == null ? LocalDate.now() : from, days);
+        return userJsonCache.encodeAll(users, stamp);
+    }
+
+    //number of users, users online and offline and registrations per day
+    @GetMapping("/users/stats")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public UserStatsDTO getStats() {
+        return userService.getStats();
+    }
+
+    // returns the user for which the id provided matches, the serialized user is cached until it changes
+    @GetMapping(value = "/users/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public UserGetDTO getUser(@PathVariable Long id) {
+    public byte[] getUser(@PathVariable Long id) {
+        byte[] json = userJsonCache.get(id);
+        if (json != null) {
+            return json;
+        }
+        long stamp = userJsonCache.stamp();
         //check if user exists
         User user = userService.getUser(id);
         // convert internal representation of user back to API
-        return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+        return userJsonCache.encode(user, stamp);
     }
 
     //changes status for the user that was provided via the token to the status that was sent along with it
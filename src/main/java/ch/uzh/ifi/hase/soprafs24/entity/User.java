@@ -5,6 +5,7 @@ import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import javax.persistence.*;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.MonthDay;
 import java.lang.reflect.Field;
 import java.util.Objects;
 
@@ -19,7 +20,17 @@ import java.util.Objects;
  * the primary key
  */
 @Entity
-@Table(name = "USER")
+// the named unique constraints decide registration and rename conflicts (see UserConstraints),
+// the indexes serve the keyset pages of GET /users filtered by status and/or sorted by creationDate
+@Table(name = "USER", uniqueConstraints = {
+    @UniqueConstraint(name = "UK_USER_USERNAME", columnNames = "username"),
+    @UniqueConstraint(name = "UK_USER_TOKEN", columnNames = "token")
+}, indexes = {
+    @Index(name = "IDX_USER_STATUS_ID", columnList = "status, id"),
+    @Index(name = "IDX_USER_CREATION_DATE_ID", columnList = "creationDate, id"),
+    @Index(name = "IDX_USER_STATUS_CREATION_DATE_ID", columnList = "status, creationDate, id"),
+    @Index(name = "IDX_USER_BIRTHDAY_DAY_ID", columnList = "birthdayDayOfYear, id")
+})
 public class User implements Serializable {
 
   private static final long serialVersionUID = 1L;
@@ -31,10 +42,10 @@ public class User implements Serializable {
   @Column(nullable = false)
   private String password;
 
-  @Column(nullable = false, unique = true)
+  @Column(nullable = false)
   private String username;
 
-  @Column(nullable = false, unique = true)
+  @Column(nullable = false)
   private String token;
 
   @Column(nullable = false)
@@ -46,6 +57,15 @@ public class User implements Serializable {
   @Column(nullable = true)
   private LocalDate birthday;
 
+  // month and day of the birthday as day of a leap year (Feb 29 -> 60, Mar 1 -> 61 in every year),
+  // derived from the birthday so that upcoming birthdays are an index range, see BirthdayWindow
+  @Column(nullable = true)
+  private Integer birthdayDayOfYear;
+
+  // optimistic lock, concurrent read-modify-writes of the same user fail instead of overwriting each other
+  @Version
+  private Long version;
+
   //allows to compare attributes with other classes
   public boolean isAttributeSameAs(User other, String attributeName) throws IllegalAccessException {
     // Get the field by name using reflection
@@ -120,13 +140,30 @@ public class User implements Serializable {
         this.creationDate = LocalDate.now();
     }
 
+  public void setCreationDate(LocalDate creationDate) {
+    this.creationDate = creationDate;
+  }
+
   public LocalDate getBirthday() {
         return birthday;
     }
 
   public void setBirthday(LocalDate birthday) {
         this.birthday = birthday;
+        this.birthdayDayOfYear = dayOfLeapYear(birthday);
     }
+
+  public Integer getBirthdayDayOfYear() {
+    return birthdayDayOfYear;
+  }
+
+  public static Integer dayOfLeapYear(LocalDate date) {
+    return date == null ? null : MonthDay.from(date).atYear(2000).getDayOfYear();
+  }
+
+  public Long getVersion() {
+    return version;
+  }
 }
 
 
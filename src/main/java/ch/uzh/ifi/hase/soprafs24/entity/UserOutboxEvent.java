@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Internal User Outbox Representation
+ * Every mutation of a user writes one row into this table within the same
+ * transaction. The other application instances poll the table and invalidate
+ * their local user state accordingly.
+ * - userId -> null if any user may have changed (e.g. after an import)
+ * - origin -> identifies the instance that wrote the row so it can skip its own
+ * changes (those are already applied locally after commit)
+ */
+@Entity
+@Table(name = "USER_OUTBOX")
+public class UserOutboxEvent implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Id
+  @GeneratedValue
+  private Long id;
+
+  @Column(nullable = true)
+  private Long userId;
+
+  @Column(nullable = false)
+  private String origin;
+
+  @Column(nullable = false)
+  private Instant createdAt;
+
+  public UserOutboxEvent() {
+  }
+
+  public UserOutboxEvent(Long userId, String origin) {
+    this.userId = userId;
+    this.origin = origin;
+    this.createdAt = Instant.now();
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+}
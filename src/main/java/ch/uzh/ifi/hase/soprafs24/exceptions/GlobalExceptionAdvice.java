@@ -2,6 +2,7 @@ package ch.uzh.ifi.hase.soprafs24.exceptions;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +28,13 @@ public class GlobalExceptionAdvice extends ResponseEntityExceptionHandler {
     return handleExceptionInternal(ex, bodyOfResponse, new HttpHeaders(), HttpStatus.CONFLICT, request);
   }
 
+  // a lost race against a concurrent update that outlasted the retries, the unique constraints are answered by UserConstraints
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  protected ResponseEntity<Object> handleConcurrentModification(RuntimeException ex, WebRequest request) {
+    String bodyOfResponse = "The user was modified concurrently, please retry";
+    return handleExceptionInternal(ex, bodyOfResponse, new HttpHeaders(), HttpStatus.CONFLICT, request);
+  }
+
   @ExceptionHandler(TransactionSystemException.class)
   public ResponseStatusException handleTransactionSystemException(Exception ex, HttpServletRequest request) {
     log.error("Request: {} raised {}", request.getRequestURL(), ex);
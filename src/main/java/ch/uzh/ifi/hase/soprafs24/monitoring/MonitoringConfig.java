@@ -0,0 +1,55 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Monitoring Config
+ * Registers the request interceptors of the monitoring package. They are only
+ * added if their stats are part of the context (not in sliced @WebMvcTest
+ * contexts). With tracing enabled the Jackson message converter is replaced by
+ * the TracingMessageConverter.
+ */
+@Configuration
+public class MonitoringConfig implements WebMvcConfigurer {
+
+  private final ObjectProvider<SqlStatementStats> sqlStatementStats;
+
+  private final ObjectProvider<TraceCollector> traceCollector;
+
+  public MonitoringConfig(ObjectProvider<SqlStatementStats> sqlStatementStats,
+                          ObjectProvider<TraceCollector> traceCollector) {
+    this.sqlStatementStats = sqlStatementStats;
+    this.traceCollector = traceCollector;
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    // the trace is started first, so it covers the other interceptors
+    traceCollector.ifAvailable(collector -> {
+      if (collector.isEnabled()) {
+        registry.addInterceptor(new TracingInterceptor(collector));
+      }
+    });
+    sqlStatementStats.ifAvailable(stats -> registry.addInterceptor(new SqlStatementInterceptor(stats)));
+  }
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    TraceCollector collector = traceCollector.getIfAvailable();
+    if (collector == null || !collector.isEnabled()) {
+      return;
+    }
+    for (int i = 0; i < converters.size(); i++) {
+      if (converters.get(i).getClass() == MappingJackson2HttpMessageConverter.class) {
+        converters.set(i, new TracingMessageConverter(((MappingJackson2HttpMessageConverter) converters.get(i)).getObjectMapper()));
+      }
+    }
+  }
+}
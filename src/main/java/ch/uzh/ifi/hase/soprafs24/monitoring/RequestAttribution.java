@@ -0,0 +1,41 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+/**
+ * Request Attribution
+ * The SQL statement scope and the trace of the current thread, captured so that
+ * work another thread does on its behalf (e.g. the leader of a group commit
+ * applying the mutation of a waiting caller) is charged to the request it
+ * belongs to. The captured thread must be waiting in the meantime, the scope
+ * and the trace are not thread-safe.
+ */
+public final class RequestAttribution {
+
+  private final SqlStatementCounter.Scope scope;
+
+  private final Trace trace;
+
+  private RequestAttribution(SqlStatementCounter.Scope scope, Trace trace) {
+    this.scope = scope;
+    this.trace = trace;
+  }
+
+  public static RequestAttribution capture() {
+    return new RequestAttribution(SqlStatementCounter.current(), Tracer.current());
+  }
+
+  //charges the statements and spans of the current thread to the captured request until closed
+  public Attached attach() {
+    SqlStatementCounter.Scope previousScope = SqlStatementCounter.swap(scope);
+    Trace previousTrace = Tracer.swap(trace);
+    return () -> {
+      Tracer.swap(previousTrace);
+      SqlStatementCounter.swap(previousScope);
+    };
+  }
+
+  public interface Attached extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+}
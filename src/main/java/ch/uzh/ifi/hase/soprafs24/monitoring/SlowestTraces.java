@@ -0,0 +1,71 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Slowest Traces
+ * Keeps the slowest traces of a sliding window. The window is split into
+ * buckets, each keeping its slowest traces; a bucket is reused once it fell
+ * out of the window. At most buckets * limit traces are held.
+ */
+public class SlowestTraces {
+
+  private static final int BUCKETS = 10;
+
+  private static final Comparator<Trace> BY_DURATION = Comparator.comparingLong(Trace::getDurationNanos);
+
+  private final long bucketMillis;
+
+  private final int limit;
+
+  private final long[] bucketStarts = new long[BUCKETS];
+
+  private final List<PriorityQueue<Trace>> buckets = new ArrayList<>(BUCKETS);
+
+  public SlowestTraces(long windowMillis, int limit) {
+    this.bucketMillis = Math.max(1, windowMillis / BUCKETS);
+    this.limit = limit;
+    for (int i = 0; i < BUCKETS; i++) {
+      // the fastest trace of a bucket is on top, it is replaced first
+      buckets.add(new PriorityQueue<>(BY_DURATION));
+      bucketStarts[i] = -1;
+    }
+  }
+
+  synchronized void add(Trace trace, long nowMillis) {
+    if (limit <= 0) {
+      return;
+    }
+    long start = nowMillis - nowMillis % bucketMillis;
+    int index = (int) ((nowMillis / bucketMillis) % BUCKETS);
+    PriorityQueue<Trace> bucket = buckets.get(index);
+    if (bucketStarts[index] != start) {
+      bucket.clear();
+      bucketStarts[index] = start;
+    }
+    if (bucket.size() < limit) {
+      bucket.add(trace);
+    }
+    else if (bucket.peek().getDurationNanos() < trace.getDurationNanos()) {
+      bucket.poll();
+      bucket.add(trace);
+    }
+  }
+
+  //the slowest traces finished within the window, slowest first
+  synchronized List<Trace> get(long nowMillis, int count) {
+    // the oldest bucket still covering part of the window
+    long oldest = nowMillis - nowMillis % bucketMillis - (BUCKETS - 1) * bucketMillis;
+    List<Trace> traces = new ArrayList<>();
+    for (int i = 0; i < BUCKETS; i++) {
+      if (bucketStarts[i] >= oldest) {
+        traces.addAll(buckets.get(i));
+      }
+    }
+    traces.sort(BY_DURATION.reversed());
+    return traces.subList(0, Math.min(count, traces.size()));
+  }
+}
@@ -0,0 +1,100 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * SQL Statement Counter
+ * Hibernate StatementInspector (see hibernate.session_factory.statement_inspector)
+ * that counts the statements prepared by the current thread while a Scope is
+ * open. The interceptor opens one per request, tests open their own to assert
+ * the statements of a single call. Scopes can be nested, statements are
+ * counted in every open scope of the thread.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+  @Override
+  public String inspect(String sql) {
+    Scope scope = CURRENT.get();
+    if (scope != null) {
+      scope.record(sql);
+    }
+    return sql;
+  }
+
+  public static Scope open() {
+    Scope scope = new Scope(CURRENT.get());
+    CURRENT.set(scope);
+    return scope;
+  }
+
+  static Scope current() {
+    return CURRENT.get();
+  }
+
+  //the statements of the current thread are counted in the given scope (none if null) from now on, returns the scope replaced
+  static Scope swap(Scope scope) {
+    Scope previous = CURRENT.get();
+    CURRENT.set(scope);
+    return previous;
+  }
+
+  public static final class Scope implements AutoCloseable {
+
+    private final Scope parent;
+
+    // statements are counted by their SQL with placeholders, so repeated lookups (N+1) have the same key
+    private final Map<String, Integer> countBySql = new HashMap<>();
+
+    private int statements;
+
+    private Scope(Scope parent) {
+      this.parent = parent;
+    }
+
+    private void record(String sql) {
+      statements++;
+      countBySql.merge(sql, 1, Integer::sum);
+      if (parent != null) {
+        parent.record(sql);
+      }
+    }
+
+    public int getStatements() {
+      return statements;
+    }
+
+    //statements whose SQL starts with the given prefix, ignoring the case, e.g. "update user "
+    public int getStatements(String prefix) {
+      String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+      return countBySql.entrySet().stream()
+          .filter(entry -> entry.getKey().toLowerCase(Locale.ROOT).startsWith(lowerPrefix))
+          .mapToInt(Map.Entry::getValue)
+          .sum();
+    }
+
+    //how often the most repeated statement was executed
+    public int getMaxRepeats() {
+      return countBySql.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    public String getMostRepeated() {
+      return countBySql.entrySet().stream()
+          .max(Map.Entry.comparingByValue())
+          .map(Map.Entry::getKey)
+          .orElse(null);
+    }
+
+    @Override
+    public void close() {
+      CURRENT.set(parent);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * SQL Statement Interceptor
+ * Counts the SQL statements of every request and hands them to the
+ * SqlStatementStats under the endpoint pattern (e.g. "GET /users/{id}").
+ */
+public class SqlStatementInterceptor implements HandlerInterceptor {
+
+  private static final String SCOPE_ATTRIBUTE = SqlStatementInterceptor.class.getName() + ".scope";
+
+  private final SqlStatementStats sqlStatementStats;
+
+  public SqlStatementInterceptor(SqlStatementStats sqlStatementStats) {
+    this.sqlStatementStats = sqlStatementStats;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    request.setAttribute(SCOPE_ATTRIBUTE, SqlStatementCounter.open());
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    SqlStatementCounter.Scope scope = (SqlStatementCounter.Scope) request.getAttribute(SCOPE_ATTRIBUTE);
+    if (scope == null) {
+      return;
+    }
+    scope.close();
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    sqlStatementStats.record(request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI()), scope);
+  }
+}
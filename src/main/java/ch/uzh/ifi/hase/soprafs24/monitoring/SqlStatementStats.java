@@ -0,0 +1,88 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL Statement Stats
+ * Statements per request aggregated by endpoint. Requests above the configured
+ * budget, or executing the same statement repeatedly (N+1), are flagged with a
+ * warning and counted.
+ */
+@Component
+public class SqlStatementStats {
+
+  private final Logger log = LoggerFactory.getLogger(SqlStatementStats.class);
+
+  private final ConcurrentMap<String, EndpointStats> statsByEndpoint = new ConcurrentHashMap<>();
+
+  private final int budget;
+
+  private final int repeatThreshold;
+
+  public SqlStatementStats(@Value("${users.sql.budget:8}") int budget,
+                           @Value("${users.sql.repeat-threshold:5}") int repeatThreshold) {
+    this.budget = budget;
+    this.repeatThreshold = repeatThreshold;
+  }
+
+  public void record(String endpoint, SqlStatementCounter.Scope scope) {
+    EndpointStats stats = statsByEndpoint.computeIfAbsent(endpoint, key -> new EndpointStats());
+    int statements = scope.getStatements();
+    stats.requests.increment();
+    stats.statements.add(statements);
+    stats.max.accumulateAndGet(statements, Math::max);
+    if (budget > 0 && statements > budget) {
+      stats.overBudget.increment();
+      log.warn("{} executed {} SQL statements, budget is {}", endpoint, statements, budget);
+    }
+    if (repeatThreshold > 0 && scope.getMaxRepeats() >= repeatThreshold) {
+      stats.repeated.increment();
+      log.warn("{} executed the same SQL statement {} times (possible N+1): {}", endpoint, scope.getMaxRepeats(),
+          scope.getMostRepeated());
+    }
+  }
+
+  //snapshot of the stats sorted by endpoint
+  public Map<String, Map<String, Number>> snapshot() {
+    Map<String, Map<String, Number>> snapshot = new TreeMap<>();
+    statsByEndpoint.forEach((endpoint, stats) -> {
+      long requests = stats.requests.sum();
+      Map<String, Number> values = new TreeMap<>();
+      values.put("requests", requests);
+      values.put("statements", stats.statements.sum());
+      values.put("averagePerRequest", requests == 0 ? 0 : (double) stats.statements.sum() / requests);
+      values.put("max", stats.max.get());
+      values.put("overBudget", stats.overBudget.sum());
+      values.put("repeatedStatements", stats.repeated.sum());
+      snapshot.put(endpoint, values);
+    });
+    return snapshot;
+  }
+
+  public int getBudget() {
+    return budget;
+  }
+
+  private static final class EndpointStats {
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder statements = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    private final LongAdder overBudget = new LongAdder();
+
+    private final LongAdder repeated = new LongAdder();
+  }
+}
@@ -0,0 +1,249 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TraceLayer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trace
+ * The spans of one request, kept in parallel arrays. Span 0 is the request
+ * itself. Written by the request thread only, once finished it is handed to
+ * the TraceCollector and not changed anymore.
+ * Spans beyond maxSpans are dropped and counted, their children are dropped
+ * as well.
+ */
+final class Trace implements Tracer.Span {
+
+  private final long traceId = ThreadLocalRandom.current().nextLong();
+
+  private final long startMillis = System.currentTimeMillis();
+
+  private final long startNanos = System.nanoTime();
+
+  private final int maxSpans;
+
+  private String[] names;
+
+  private TraceLayer[] layers;
+
+  private String[] details;
+
+  private int[] parents;
+
+  // nanos since the start of the trace
+  private long[] starts;
+
+  // -1 while the span is open
+  private long[] durations;
+
+  private int size;
+
+  // innermost open span
+  private int current = -1;
+
+  // dropped spans that are still open, they are closed before current
+  private int droppedOpen;
+
+  private int dropped;
+
+  private int status;
+
+  Trace(String name, int maxSpans) {
+    this.maxSpans = Math.max(1, maxSpans);
+    int capacity = Math.min(16, this.maxSpans);
+    names = new String[capacity];
+    layers = new TraceLayer[capacity];
+    details = new String[capacity];
+    parents = new int[capacity];
+    starts = new long[capacity];
+    durations = new long[capacity];
+    start(TraceLayer.HTTP, name, null);
+  }
+
+  void start(TraceLayer layer, String name, String detail) {
+    if (size == maxSpans) {
+      droppedOpen++;
+      dropped++;
+      return;
+    }
+    if (size == names.length) {
+      grow();
+    }
+    names[size] = name;
+    layers[size] = layer;
+    details[size] = detail;
+    parents[size] = current;
+    starts[size] = System.nanoTime() - startNanos;
+    durations[size] = -1;
+    current = size++;
+  }
+
+  @Override
+  public void close() {
+    if (droppedOpen > 0) {
+      droppedOpen--;
+      return;
+    }
+    // the request span is only closed by finish
+    if (current > 0) {
+      end(current, System.nanoTime() - startNanos);
+    }
+  }
+
+  // closes all spans still open, including the request span
+  void finish(int status) {
+    this.status = status;
+    droppedOpen = 0;
+    long now = System.nanoTime() - startNanos;
+    while (current >= 0) {
+      end(current, now);
+    }
+  }
+
+  private void end(int span, long now) {
+    durations[span] = now - starts[span];
+    current = parents[span];
+  }
+
+  private void grow() {
+    int capacity = Math.min(maxSpans, names.length * 2);
+    names = Arrays.copyOf(names, capacity);
+    layers = Arrays.copyOf(layers, capacity);
+    details = Arrays.copyOf(details, capacity);
+    parents = Arrays.copyOf(parents, capacity);
+    starts = Arrays.copyOf(starts, capacity);
+    durations = Arrays.copyOf(durations, capacity);
+  }
+
+  long getTraceId() {
+    return traceId;
+  }
+
+  String getName() {
+    return names[0];
+  }
+
+  long getStartMillis() {
+    return startMillis;
+  }
+
+  long getDurationNanos() {
+    return durations[0];
+  }
+
+  int getSpans() {
+    return size;
+  }
+
+  int getDropped() {
+    return dropped;
+  }
+
+  int getStatus() {
+    return status;
+  }
+
+  //time spent in each layer, excluding the time of the spans nested in it
+  Map<TraceLayer, Long> exclusiveNanosByLayer() {
+    long[] exclusive = new long[size];
+    for (int i = 0; i < size; i++) {
+      exclusive[i] += durations[i];
+      if (parents[i] >= 0) {
+        exclusive[parents[i]] -= durations[i];
+      }
+    }
+    Map<TraceLayer, Long> byLayer = new EnumMap<>(TraceLayer.class);
+    for (int i = 0; i < size; i++) {
+      byLayer.merge(layers[i], exclusive[i], Long::sum);
+    }
+    return byLayer;
+  }
+
+  //the spans in the Zipkin v2 JSON model, see https://zipkin.io/zipkin-api/#/default/post_spans
+  List<Map<String, Object>> toZipkin(String serviceName) {
+    Map<String, String> endpoint = Map.of("serviceName", serviceName);
+    List<Map<String, Object>> spans = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      Map<String, Object> span = new LinkedHashMap<>();
+      span.put("traceId", hex(traceId));
+      span.put("id", spanId(i));
+      if (parents[i] >= 0) {
+        span.put("parentId", spanId(parents[i]));
+      }
+      span.put("name", names[i]);
+      if (i == 0) {
+        span.put("kind", "SERVER");
+      }
+      span.put("timestamp", startMillis * 1000 + starts[i] / 1000);
+      // zipkin drops spans with a duration of 0
+      span.put("duration", Math.max(1, durations[i] / 1000));
+      span.put("localEndpoint", endpoint);
+      Map<String, String> tags = new LinkedHashMap<>();
+      tags.put("layer", layers[i].name().toLowerCase());
+      if (details[i] != null) {
+        tags.put(layers[i] == TraceLayer.JDBC ? "sql.query" : "detail", details[i]);
+      }
+      if (i == 0) {
+        tags.put("http.status_code", Integer.toString(status));
+        if (dropped > 0) {
+          tags.put("dropped_spans", Integer.toString(dropped));
+        }
+      }
+      span.put("tags", tags);
+      spans.add(span);
+    }
+    return spans;
+  }
+
+  //summary with the breakdown by layer and the span tree, for the admin endpoint
+  Map<String, Object> toSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("traceId", hex(traceId));
+    summary.put("name", names[0]);
+    summary.put("status", status);
+    summary.put("start", Instant.ofEpochMilli(startMillis).toString());
+    summary.put("durationMs", millis(durations[0]));
+    Map<String, Double> layerMillis = new LinkedHashMap<>();
+    exclusiveNanosByLayer().forEach((layer, nanos) -> layerMillis.put(layer.name().toLowerCase(), millis(nanos)));
+    summary.put("layersMs", layerMillis);
+    List<Map<String, Object>> spans = new ArrayList<>(size);
+    int[] depths = new int[size];
+    for (int i = 0; i < size; i++) {
+      depths[i] = parents[i] < 0 ? 0 : depths[parents[i]] + 1;
+      Map<String, Object> span = new LinkedHashMap<>();
+      span.put("depth", depths[i]);
+      span.put("layer", layers[i].name().toLowerCase());
+      span.put("name", names[i]);
+      span.put("startMs", millis(starts[i]));
+      span.put("durationMs", millis(durations[i]));
+      if (details[i] != null) {
+        span.put("detail", details[i]);
+      }
+      spans.add(span);
+    }
+    summary.put("spans", spans);
+    summary.put("droppedSpans", dropped);
+    return summary;
+  }
+
+  private String spanId(int span) {
+    // unique within the trace, the request span has the id of the trace
+    return hex(traceId + span);
+  }
+
+  private static String hex(long value) {
+    String hex = Long.toHexString(value);
+    return "0000000000000000".substring(hex.length()) + hex;
+  }
+
+  private static double millis(long nanos) {
+    return Math.round(nanos / 1000.0) / 1000.0;
+  }
+}
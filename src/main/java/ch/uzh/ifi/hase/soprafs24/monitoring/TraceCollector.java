@@ -0,0 +1,209 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trace Collector
+ * Decides which requests are traced (users.tracing.sample-rate) and collects
+ * their traces once finished: the slowest ones of the window are kept for
+ * /admin/traces, all of them are written to traces.json by a background thread,
+ * one trace per line as a JSON array of Zipkin v2 spans (a line can be posted
+ * to a Zipkin collector at /api/v2/spans or loaded in its UI as it is). If the
+ * writer cannot keep up, traces are dropped and counted rather than slowing
+ * down the requests.
+ */
+@Component
+public class TraceCollector {
+
+  private final Logger log = LoggerFactory.getLogger(TraceCollector.class);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final boolean enabled;
+
+  private final double sampleRate;
+
+  private final int maxSpans;
+
+  private final long windowMillis;
+
+  private final String directory;
+
+  private final long maxFileBytes;
+
+  private final int maxFiles;
+
+  private final String serviceName;
+
+  private final SlowestTraces slowestTraces;
+
+  private final BlockingQueue<Trace> queue;
+
+  private final LongAdder sampled = new LongAdder();
+
+  private final LongAdder exported = new LongAdder();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private TraceFileWriter writer;
+
+  private Thread exporter;
+
+  private volatile boolean running;
+
+  private volatile long writeErrors;
+
+  public TraceCollector(@Value("${users.tracing.enabled:true}") boolean enabled,
+                        @Value("${users.tracing.sample-rate:0.01}") double sampleRate,
+                        @Value("${users.tracing.max-spans:256}") int maxSpans,
+                        @Value("${users.tracing.window-ms:300000}") long windowMillis,
+                        @Value("${users.tracing.slowest:20}") int slowest,
+                        @Value("${users.tracing.queue-capacity:1024}") int queueCapacity,
+                        @Value("${users.tracing.directory:${java.io.tmpdir}/soprafs24/traces}") String directory,
+                        @Value("${users.tracing.max-file-bytes:10485760}") long maxFileBytes,
+                        @Value("${users.tracing.max-files:5}") int maxFiles,
+                        @Value("${spring.application.name:soprafs24}") String serviceName) {
+    if (sampleRate < 0 || sampleRate > 1) {
+      throw new IllegalArgumentException("users.tracing.sample-rate must be between 0 and 1");
+    }
+    this.enabled = enabled && sampleRate > 0;
+    this.sampleRate = sampleRate;
+    this.maxSpans = maxSpans;
+    this.windowMillis = windowMillis;
+    this.directory = directory;
+    this.maxFileBytes = maxFileBytes;
+    this.maxFiles = maxFiles;
+    this.serviceName = serviceName;
+    this.slowestTraces = new SlowestTraces(windowMillis, slowest);
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    writer = new TraceFileWriter(Paths.get(directory), maxFileBytes, maxFiles);
+    running = true;
+    exporter = new Thread(this::export, "trace-exporter");
+    exporter.setDaemon(true);
+    exporter.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException, IOException {
+    if (exporter == null) {
+      return;
+    }
+    running = false;
+    exporter.join(TimeUnit.SECONDS.toMillis(5));
+    writer.close();
+    if (dropped.sum() > 0) {
+      log.warn("Tracing dropped {} traces", dropped.sum());
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  //starts the trace of the current thread if the request is sampled, null otherwise
+  Trace begin(String name) {
+    if (!enabled || Tracer.isActive()) {
+      return null;
+    }
+    if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return null;
+    }
+    sampled.increment();
+    return Tracer.begin(name, maxSpans);
+  }
+
+  void finish(Trace trace, int status) {
+    Tracer.end(trace, status);
+    slowestTraces.add(trace, System.currentTimeMillis());
+    if (!queue.offer(trace)) {
+      dropped.increment();
+    }
+  }
+
+  //the slowest traces of the window with their breakdown by layer, and the counters of the collector
+  public Map<String, Object> snapshot(int limit) {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("sampleRate", enabled ? sampleRate : 0);
+    snapshot.put("windowMs", windowMillis);
+    snapshot.put("sampled", sampled.sum());
+    snapshot.put("exported", exported.sum());
+    snapshot.put("dropped", dropped.sum());
+    snapshot.put("writeErrors", writeErrors);
+    List<Map<String, Object>> traces = new ArrayList<>();
+    for (Trace trace : slowestTraces.get(System.currentTimeMillis(), limit)) {
+      traces.add(trace.toSummary());
+    }
+    snapshot.put("slowest", traces);
+    return snapshot;
+  }
+
+  private void export() {
+    List<Trace> batch = new ArrayList<>();
+    while (running || !queue.isEmpty()) {
+      try {
+        Trace trace = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (trace == null) {
+          continue;
+        }
+        batch.add(trace);
+        queue.drainTo(batch, 511);
+        for (Trace each : batch) {
+          writer.write(toLine(each));
+          exported.increment();
+        }
+        writer.flush();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      catch (IOException e) {
+        writeFailed(e);
+      }
+      finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private byte[] toLine(Trace trace) throws JsonProcessingException {
+    byte[] json = objectMapper.writeValueAsBytes(trace.toZipkin(serviceName));
+    byte[] line = new byte[json.length + 1];
+    System.arraycopy(json, 0, line, 0, json.length);
+    line[json.length] = '\n';
+    return line;
+  }
+
+  private void writeFailed(IOException e) {
+    // only log the first failure and then every thousandth to not flood the log
+    if (writeErrors++ % 1000 == 0) {
+      log.error("Writing traces failed ({} failures so far)", writeErrors, e);
+    }
+  }
+}
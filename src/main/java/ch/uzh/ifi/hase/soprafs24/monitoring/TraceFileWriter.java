@@ -0,0 +1,93 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Trace File Writer
+ * Appends one line per trace to traces.json in the configured directory. Once
+ * the file would grow beyond the maximum size it is renamed to
+ * traces-<timestamp>.json and a new one is started, keeping at most maxFiles
+ * rolled files.
+ * Not thread-safe, only used by the trace exporter thread.
+ */
+public class TraceFileWriter implements Closeable {
+
+  static final String ACTIVE_FILE = "traces.json";
+
+  private final Path directory;
+
+  private final long maxFileBytes;
+
+  private final int maxFiles;
+
+  private OutputStream out;
+
+  private long size;
+
+  public TraceFileWriter(Path directory, long maxFileBytes, int maxFiles) throws IOException {
+    this.directory = directory;
+    this.maxFileBytes = maxFileBytes;
+    this.maxFiles = maxFiles;
+    Files.createDirectories(directory);
+    open();
+  }
+
+  public void write(byte[] line) throws IOException {
+    if (size > 0 && size + line.length > maxFileBytes) {
+      roll();
+    }
+    out.write(line);
+    size += line.length;
+  }
+
+  //called after every batch of traces
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void open() throws IOException {
+    Path file = directory.resolve(ACTIVE_FILE);
+    out = new BufferedOutputStream(
+        Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND),
+        64 * 1024);
+    size = Files.size(file);
+  }
+
+  private void roll() throws IOException {
+    close();
+    Path rolled = directory.resolve("traces-" + System.currentTimeMillis() + ".json");
+    Files.move(directory.resolve(ACTIVE_FILE), rolled, StandardCopyOption.REPLACE_EXISTING);
+    deleteOldFiles();
+    open();
+  }
+
+  private void deleteOldFiles() throws IOException {
+    List<Path> rolledFiles = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "traces-*.json")) {
+      for (Path path : stream) {
+        rolledFiles.add(path);
+      }
+    }
+    // the timestamp in the name sorts them from oldest to newest
+    Collections.sort(rolledFiles);
+    for (int i = 0; i < rolledFiles.size() - maxFiles; i++) {
+      Files.deleteIfExists(rolledFiles.get(i));
+    }
+  }
+}
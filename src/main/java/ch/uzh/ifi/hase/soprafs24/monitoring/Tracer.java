@@ -0,0 +1,71 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TraceLayer;
+
+/**
+ * Tracer
+ * Opens the spans of the trace of the current thread. A trace is only started
+ * for sampled requests (see TracingInterceptor), without one every span is a
+ * no-op and nothing is allocated. Spans have to be closed in the reverse order
+ * they were opened, i.e. with try-with-resources:
+ *
+ *   try (Tracer.Span span = Tracer.span(TraceLayer.JACKSON, "writeUser")) { ... }
+ */
+public final class Tracer {
+
+  private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+  private static final Span NOOP = () -> { };
+
+  private Tracer() {
+  }
+
+  public static boolean isActive() {
+    return CURRENT.get() != null;
+  }
+
+  public static Span span(TraceLayer layer, String name) {
+    return span(layer, name, null);
+  }
+
+  //detail is exported as a tag of the span, e.g. the SQL of a statement
+  public static Span span(TraceLayer layer, String name, String detail) {
+    Trace trace = CURRENT.get();
+    if (trace == null) {
+      return NOOP;
+    }
+    trace.start(layer, name, detail);
+    // the trace closes its innermost open span
+    return trace;
+  }
+
+  static Trace current() {
+    return CURRENT.get();
+  }
+
+  //the spans of the current thread go to the given trace (none if null) from now on, returns the trace replaced
+  static Trace swap(Trace trace) {
+    Trace previous = CURRENT.get();
+    CURRENT.set(trace);
+    return previous;
+  }
+
+  static Trace begin(String name, int maxSpans) {
+    Trace trace = new Trace(name, maxSpans);
+    CURRENT.set(trace);
+    return trace;
+  }
+
+  static void end(Trace trace, int status) {
+    trace.finish(status);
+    if (CURRENT.get() == trace) {
+      CURRENT.remove();
+    }
+  }
+
+  public interface Span extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+}
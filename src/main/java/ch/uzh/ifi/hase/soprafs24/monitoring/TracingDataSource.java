@@ -0,0 +1,135 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TraceLayer;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tracing Data Source
+ * Wraps the pool so a traced request gets a span for waiting on a connection
+ * and for giving it back. The connections handed to traced requests add a span
+ * for every statement executed and for commit and rollback. Connections taken
+ * without a trace are the ones of the pool, untouched.
+ */
+public class TracingDataSource extends DelegatingDataSource implements Closeable {
+
+  public TracingDataSource(DataSource targetDataSource) {
+    super(targetDataSource);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (!Tracer.isActive()) {
+      return super.getConnection();
+    }
+    Connection connection;
+    try (Tracer.Span span = Tracer.span(TraceLayer.POOL, "getConnection")) {
+      connection = super.getConnection();
+    }
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+        new ConnectionHandler(connection));
+  }
+
+  // the bean replaces the pool, so it has to close it on shutdown
+  @Override
+  public void close() throws IOException {
+    DataSource target = getTargetDataSource();
+    if (target instanceof Closeable) {
+      ((Closeable) target).close();
+    }
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    }
+    catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static final class ConnectionHandler implements InvocationHandler {
+
+    private final Connection connection;
+
+    private ConnectionHandler(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "close":
+          try (Tracer.Span span = Tracer.span(TraceLayer.POOL, "releaseConnection")) {
+            return TracingDataSource.invoke(connection, method, args);
+          }
+        case "commit":
+        case "rollback":
+          try (Tracer.Span span = Tracer.span(TraceLayer.JDBC, method.getName())) {
+            return TracingDataSource.invoke(connection, method, args);
+          }
+        default:
+          Object result = TracingDataSource.invoke(connection, method, args);
+          if (result instanceof Statement) {
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            return wrap((Statement) result, sql);
+          }
+          return result;
+      }
+    }
+
+    private static Statement wrap(Statement statement, String sql) {
+      Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+          : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+      return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type },
+          new StatementHandler(statement, sql));
+    }
+  }
+
+  private static final class StatementHandler implements InvocationHandler {
+
+    private final Statement statement;
+
+    // null for plain statements, their SQL is passed to execute
+    private final String sql;
+
+    private StatementHandler(Statement statement, String sql) {
+      this.statement = statement;
+      this.sql = sql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if ("equals".equals(name)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(name)) {
+        return System.identityHashCode(proxy);
+      }
+      if (!name.startsWith("execute")) {
+        return TracingDataSource.invoke(statement, method, args);
+      }
+      String executed = sql != null ? sql : args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+      try (Tracer.Span span = Tracer.span(TraceLayer.JDBC, name, executed)) {
+        return TracingDataSource.invoke(statement, method, args);
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import ch.uzh.ifi.hase.soprafs24.controller.UserController;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tracing Interceptor
+ * Starts a trace for the sampled requests to the UserController, named by the
+ * endpoint pattern (e.g. "GET /users/{id}"), and hands it to the
+ * TraceCollector once the response has been written.
+ */
+public class TracingInterceptor implements HandlerInterceptor {
+
+  private static final String TRACE_ATTRIBUTE = TracingInterceptor.class.getName() + ".trace";
+
+  private final TraceCollector traceCollector;
+
+  public TracingInterceptor(TraceCollector traceCollector) {
+    this.traceCollector = traceCollector;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (!(handler instanceof HandlerMethod) || !UserController.class.isAssignableFrom(((HandlerMethod) handler).getBeanType())) {
+      return true;
+    }
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    Trace trace = traceCollector.begin(request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI()));
+    if (trace != null) {
+      request.setAttribute(TRACE_ATTRIBUTE, trace);
+    }
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    Trace trace = (Trace) request.getAttribute(TRACE_ATTRIBUTE);
+    if (trace != null) {
+      request.removeAttribute(TRACE_ATTRIBUTE);
+      traceCollector.finish(trace, response.getStatus());
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TraceLayer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Tracing Message Converter
+ * The Jackson message converter of Spring MVC, with a span around reading the
+ * request and writing the response body.
+ */
+public class TracingMessageConverter extends MappingJackson2HttpMessageConverter {
+
+  public TracingMessageConverter(ObjectMapper objectMapper) {
+    super(objectMapper);
+  }
+
+  @Override
+  public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+      throws IOException, HttpMessageNotReadableException {
+    if (!Tracer.isActive()) {
+      return super.read(type, contextClass, inputMessage);
+    }
+    try (Tracer.Span span = Tracer.span(TraceLayer.JACKSON, "read " + (type instanceof Class ? ((Class<?>) type).getSimpleName() : type.getTypeName()))) {
+      return super.read(type, contextClass, inputMessage);
+    }
+  }
+
+  @Override
+  protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+      throws IOException, HttpMessageNotWritableException {
+    if (!Tracer.isActive()) {
+      super.writeInternal(object, type, outputMessage);
+      return;
+    }
+    try (Tracer.Span span = Tracer.span(TraceLayer.JACKSON, "write " + object.getClass().getSimpleName())) {
+      super.writeInternal(object, type, outputMessage);
+    }
+  }
+}
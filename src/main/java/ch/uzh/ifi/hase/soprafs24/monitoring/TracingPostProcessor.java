@@ -0,0 +1,62 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TraceLayer;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Tracing Post Processor
+ * Adds the spans of the UserService and the UserRepository to their proxies
+ * (ahead of the transaction handling, so it is part of the span) and wraps the
+ * DataSource in a TracingDataSource. Beans that are not proxied by Spring
+ * (e.g. mocks) are left alone.
+ */
+@Component
+public class TracingPostProcessor implements BeanPostProcessor {
+
+  private final boolean enabled;
+
+  public TracingPostProcessor(@Value("${users.tracing.enabled:true}") boolean enabled,
+                              @Value("${users.tracing.sample-rate:0.01}") double sampleRate) {
+    this.enabled = enabled && sampleRate > 0;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (!enabled) {
+      return bean;
+    }
+    if (bean instanceof UserService) {
+      addSpans(bean, TraceLayer.SERVICE, "UserService.");
+    }
+    else if (bean instanceof UserRepository) {
+      addSpans(bean, TraceLayer.REPOSITORY, "UserRepository.");
+    }
+    else if (bean instanceof DataSource && !(bean instanceof TracingDataSource)) {
+      return new TracingDataSource((DataSource) bean);
+    }
+    return bean;
+  }
+
+  private static void addSpans(Object bean, TraceLayer layer, String prefix) {
+    if (!(bean instanceof Advised) || ((Advised) bean).isFrozen()) {
+      return;
+    }
+    MethodInterceptor interceptor = invocation -> {
+      if (!Tracer.isActive()) {
+        return invocation.proceed();
+      }
+      try (Tracer.Span span = Tracer.span(layer, prefix + invocation.getMethod().getName())) {
+        return invocation.proceed();
+      }
+    };
+    ((Advised) bean).addAdvice(0, interceptor);
+  }
+}
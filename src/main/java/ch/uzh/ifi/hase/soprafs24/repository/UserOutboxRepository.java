@@ -0,0 +1,25 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.entity.UserOutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository("userOutboxRepository")
+public interface UserOutboxRepository extends JpaRepository<UserOutboxEvent, Long> {
+  List<UserOutboxEvent> findTop500ByIdGreaterThanOrderByIdAsc(Long id);
+
+  @Query("select coalesce(max(e.id), 0) from UserOutboxEvent e")
+  Long findMaxId();
+
+  @Modifying
+  @Transactional
+  @Query("delete from UserOutboxEvent e where e.createdAt < :cutoff")
+  int deleteOlderThan(@Param("cutoff") Instant cutoff);
+}
@@ -1,9 +1,16 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.List;
+
 @Repository("userRepository")
 public interface UserRepository extends JpaRepository<User, Long> {
   User findByPassword(String password);
@@ -11,4 +18,34 @@ public interface UserRepository extends JpaRepository<User, Long> {
   User findByUsername(String username);
 
   User findByToken(String token);
+
+  // keyset pages of the user listing, each one is a range scan of an index declared on the User
+  List<User> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+  List<User> findByStatusAndIdGreaterThanOrderByIdAsc(UserStatus status, Long id, Pageable pageable);
+
+  List<User> findAllByOrderByCreationDateAscIdAsc(Pageable pageable);
+
+  List<User> findByStatusOrderByCreationDateAscIdAsc(UserStatus status, Pageable pageable);
+
+  // the first condition bounds the index range, the second skips the users of the cursor's day up to its id
+  @Query("select u from User u where u.creationDate >= :creationDate and (u.creationDate > :creationDate or u.id > :id)"
+      + " order by u.creationDate asc, u.id asc")
+  List<User> findCreatedAfter(@Param("creationDate") LocalDate creationDate, @Param("id") Long id, Pageable pageable);
+
+  @Query("select u from User u where u.status = :status and u.creationDate >= :creationDate"
+      + " and (u.creationDate > :creationDate or u.id > :id) order by u.creationDate asc, u.id asc")
+  List<User> findByStatusCreatedAfter(@Param("status") UserStatus status, @Param("creationDate") LocalDate creationDate,
+                                      @Param("id") Long id, Pageable pageable);
+
+  // users with a birthday in the range of days, see BirthdayWindow
+  List<User> findByBirthdayDayOfYearBetweenOrderByBirthdayDayOfYearAscIdAsc(Integer first, Integer last);
+
+  // rows of (status, number of users), used to reconcile the UserStats
+  @Query("select u.status, count(u) from User u where u.status is not null group by u.status")
+  List<Object[]> countByStatus();
+
+  // rows of (creationDate, number of users)
+  @Query("select u.creationDate, count(u) from User u where u.creationDate is not null group by u.creationDate")
+  List<Object[]> countByCreationDate();
 }
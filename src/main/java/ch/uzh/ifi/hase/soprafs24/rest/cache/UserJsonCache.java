@@ -0,0 +1,124 @@
+package ch.uzh.ifi.hase.soprafs24.rest.cache;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TraceLayer;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.monitoring.Tracer;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.service.UserChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * User JSON Cache
+ * Keeps the serialized UserGetDTO of every requested user, so repeated reads
+ * skip the DTOMapper and Jackson and the controller can write the bytes to the
+ * response as they are. The same fragments are joined for the user list.
+ * Entries are evicted by the UserChangedEvent, the same way as the UserCache.
+ * At most users.json-cache.max-users fragments are kept, the rarely used
+ * ones are dropped first, so listing a large table does not keep a JSON
+ * copy of all of it.
+ */
+@Component
+public class UserJsonCache {
+
+  private final ConcurrentMap<Long, byte[]> jsonById;
+
+  // incremented on every invalidation, an encoding that overlaps with one is not cached
+  private final AtomicLong invalidations = new AtomicLong();
+
+  private final ObjectMapper objectMapper;
+
+  public UserJsonCache(ObjectMapper objectMapper, @Value("${users.json-cache.max-users:10000}") long maxUsers) {
+    this.objectMapper = objectMapper;
+    // evicts on the calling thread instead of the common pool
+    this.jsonById = Caffeine.newBuilder()
+        .maximumSize(maxUsers)
+        .executor(Runnable::run)
+        .<Long, byte[]>build()
+        .asMap();
+  }
+
+  public byte[] get(Long id) {
+    return jsonById.get(id);
+  }
+
+  //has to be read before the user is loaded
+  public long stamp() {
+    return invalidations.get();
+  }
+
+  //encodes the user and caches the bytes unless an invalidation happened since the stamp was taken
+  public byte[] encode(User user, long stamp) {
+    byte[] json = serialize(user);
+    if (user.getId() != null) {
+      jsonById.put(user.getId(), json);
+      if (invalidations.get() != stamp) {
+        jsonById.remove(user.getId(), json);
+      }
+    }
+    return json;
+  }
+
+  //joins the cached fragments of the given users into a JSON array, missing fragments are encoded
+  public byte[] encodeAll(List<User> users, long stamp) {
+    byte[][] fragments = new byte[users.size()][];
+    int length = 2 + Math.max(0, users.size() - 1);
+    for (int i = 0; i < users.size(); i++) {
+      User user = users.get(i);
+      byte[] json = user.getId() == null ? null : jsonById.get(user.getId());
+      fragments[i] = json != null ? json : encode(user, stamp);
+      length += fragments[i].length;
+    }
+    byte[] array = new byte[length];
+    int position = 0;
+    array[position++] = '[';
+    for (int i = 0; i < fragments.length; i++) {
+      if (i > 0) {
+        array[position++] = ',';
+      }
+      System.arraycopy(fragments[i], 0, array, position, fragments[i].length);
+      position += fragments[i].length;
+    }
+    array[position] = ']';
+    return array;
+  }
+
+  public void clear() {
+    invalidations.incrementAndGet();
+    jsonById.clear();
+  }
+
+  public int size() {
+    return jsonById.size();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    invalidations.incrementAndGet();
+    if (event.isAll()) {
+      jsonById.clear();
+    }
+    else {
+      jsonById.remove(event.getUserId());
+    }
+  }
+
+  private byte[] serialize(User user) {
+    UserGetDTO dto = DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+    try (Tracer.Span span = Tracer.span(TraceLayer.JACKSON, "write UserGetDTO")) {
+      return objectMapper.writeValueAsBytes(dto);
+    }
+    catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize user " + user.getId(), e);
+    }
+  }
+}
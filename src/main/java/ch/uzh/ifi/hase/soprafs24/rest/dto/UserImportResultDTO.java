@@ -0,0 +1,32 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class UserImportResultDTO {
+
+  private long rows;
+  private long chunks;
+  private long millis;
+  private double rowsPerSecond;
+
+  public UserImportResultDTO(long rows, long chunks, long millis) {
+    this.rows = rows;
+    this.chunks = chunks;
+    this.millis = millis;
+    this.rowsPerSecond = millis == 0 ? rows : rows * 1000.0 / millis;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public long getChunks() {
+    return chunks;
+  }
+
+  public long getMillis() {
+    return millis;
+  }
+
+  public double getRowsPerSecond() {
+    return rowsPerSecond;
+  }
+}
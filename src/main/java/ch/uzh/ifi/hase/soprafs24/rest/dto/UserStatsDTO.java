@@ -0,0 +1,34 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.Map;
+
+public class UserStatsDTO {
+
+  private long total;
+  private long online;
+  private long offline;
+  private Map<String, Long> registrationsPerDay;
+
+  public UserStatsDTO(long total, long online, long offline, Map<String, Long> registrationsPerDay) {
+    this.total = total;
+    this.online = online;
+    this.offline = offline;
+    this.registrationsPerDay = registrationsPerDay;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public long getOnline() {
+    return online;
+  }
+
+  public long getOffline() {
+    return offline;
+  }
+
+  public Map<String, Long> getRegistrationsPerDay() {
+    return registrationsPerDay;
+  }
+}
@@ -16,8 +16,10 @@ import org.mapstruct.factory.Mappers;
  * Additional mappers can be defined for new entities.
  * Always created one mapper for getting information (GET) and one mapper for
  * creating information (POST).
+ * The generated mapper is decorated by the TracingDTOMapper.
  */
 @Mapper
+@DecoratedWith(TracingDTOMapper.class)
 public interface DTOMapper {
 
   DTOMapper INSTANCE = Mappers.getMapper(DTOMapper.class);
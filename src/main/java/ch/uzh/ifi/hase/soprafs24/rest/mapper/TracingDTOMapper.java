@@ -0,0 +1,35 @@
+package ch.uzh.ifi.hase.soprafs24.rest.mapper;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TraceLayer;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.monitoring.Tracer;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+
+/**
+ * Tracing DTOMapper
+ * Decorates the generated DTOMapper with a span per conversion for traced
+ * requests, see DTOMapper.
+ */
+public abstract class TracingDTOMapper implements DTOMapper {
+
+  private final DTOMapper delegate;
+
+  protected TracingDTOMapper(DTOMapper delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public User convertUserPostDTOtoEntity(UserPostDTO userPostDTO) {
+    try (Tracer.Span span = Tracer.span(TraceLayer.MAPPER, "DTOMapper.convertUserPostDTOtoEntity")) {
+      return delegate.convertUserPostDTOtoEntity(userPostDTO);
+    }
+  }
+
+  @Override
+  public UserGetDTO convertEntityToUserGetDTO(User user) {
+    try (Tracer.Span span = Tracer.span(TraceLayer.MAPPER, "DTOMapper.convertEntityToUserGetDTO")) {
+      return delegate.convertEntityToUserGetDTO(user);
+    }
+  }
+}
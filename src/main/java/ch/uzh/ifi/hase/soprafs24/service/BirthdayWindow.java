@@ -0,0 +1,60 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Birthday Window
+ * Translates "the birthdays within days starting at from" into ranges of
+ * User.birthdayDayOfYear, in the order the birthdays come up. A window that
+ * runs past the end of the year is split into two ranges. Birthdays on
+ * February 29 are celebrated on February 28 in years without a leap day.
+ */
+public final class BirthdayWindow {
+
+  public static final int MAX_DAYS = 366;
+
+  private static final int LAST_DAY = 366;
+
+  private final List<int[]> ranges;
+
+  private BirthdayWindow(List<int[]> ranges) {
+    this.ranges = ranges;
+  }
+
+  public static BirthdayWindow of(LocalDate from, int days) {
+    if (days < 1 || days > MAX_DAYS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "days must be between 1 and " + MAX_DAYS);
+    }
+    LocalDate to = from.plusDays(days - 1L);
+    int first = User.dayOfLeapYear(from);
+    int last = User.dayOfLeapYear(to);
+    if (!to.isLeapYear() && to.getMonth() == Month.FEBRUARY && to.getDayOfMonth() == 28) {
+      // the window ends on the day February 29 birthdays are celebrated on
+      last++;
+    }
+    if (to.getYear() == from.getYear()) {
+      return new BirthdayWindow(Collections.singletonList(new int[] { first, last }));
+    }
+    List<int[]> ranges = new ArrayList<>();
+    ranges.add(new int[] { first, LAST_DAY });
+    // a window of a whole year ends on the day before it started, the ranges must not overlap then
+    int end = last < first ? last : first - 1;
+    if (end >= 1) {
+      ranges.add(new int[] { 1, end });
+    }
+    return new BirthdayWindow(ranges);
+  }
+
+  //inclusive ranges of User.birthdayDayOfYear as {first, last}
+  public List<int[]> getRanges() {
+    return ranges;
+  }
+}
@@ -0,0 +1,393 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact User Table
+ * The readable columns of the USER table (the password is left out) in
+ * parallel primitive arrays, one slot per user in the order of the ids:
+ * - the status as its ordinal in a byte,
+ * - the creation date and the birthday as epoch days in ints,
+ * - username and token packed into one byte array as length prefixed UTF-8.
+ * A user takes about 60 bytes plus its username and token instead of the
+ * object graph of a User entity. Lookups by id are binary searches, the order
+ * by creation date is kept as a separate array of slots.
+ * Not thread-safe, see UserReadModel.
+ */
+public final class CompactUserTable {
+
+  private static final UserStatus[] STATUSES = UserStatus.values();
+
+  private static final byte NO_STATUS = -1;
+
+  private static final int NO_DATE = Integer.MIN_VALUE;
+
+  private static final int NULL_TEXT = 0xFFFF;
+
+  // object header and length of an array
+  private static final int ARRAY_HEADER_BYTES = 16;
+
+  private int size;
+
+  private long[] ids;
+
+  private long[] versions;
+
+  private byte[] statuses;
+
+  private int[] creationDays;
+
+  private int[] birthdays;
+
+  private int[] textOffsets;
+
+  private byte[] text;
+
+  private int textLength;
+
+  // bytes of the arena no slot refers to anymore (renames), compacted once they are the majority
+  private int textGarbage;
+
+  // slots ordered by creation date and id, rebuilt on demand once a change broke it
+  private int[] creationOrder = new int[0];
+
+  private boolean creationOrderValid = true;
+
+  public CompactUserTable(int capacity) {
+    int slots = Math.max(16, capacity);
+    ids = new long[slots];
+    versions = new long[slots];
+    statuses = new byte[slots];
+    creationDays = new int[slots];
+    birthdays = new int[slots];
+    textOffsets = new int[slots];
+    text = new byte[slots * 48];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Inserts the user or overwrites the slot with its id. A version older than
+   * the one already stored is ignored, so changes applied out of order do not
+   * go back in time.
+   *
+   * @return false if the change was ignored
+   */
+  public boolean put(long id, long version, UserStatus status, LocalDate creationDate, LocalDate birthday,
+                     String username, String token) {
+    int slot = Arrays.binarySearch(ids, 0, size, id);
+    if (slot >= 0 && versions[slot] > version) {
+      return false;
+    }
+    int creationDay = epochDay(creationDate);
+    // appended before the slots change, appending may compact the text of the current slots
+    int previousText = slot >= 0 ? recordLength(textOffsets[slot]) : 0;
+    int textOffset = appendText(username, token);
+    if (slot >= 0) {
+      textGarbage += previousText;
+      if (creationDays[slot] != creationDay) {
+        creationOrderValid = false;
+      }
+    }
+    else {
+      slot = -slot - 1;
+      insertSlot(slot);
+      ids[slot] = id;
+      creationDays[slot] = creationDay;
+      appendToCreationOrder(slot);
+    }
+    versions[slot] = version;
+    statuses[slot] = status == null ? NO_STATUS : (byte) status.ordinal();
+    creationDays[slot] = creationDay;
+    birthdays[slot] = epochDay(birthday);
+    textOffsets[slot] = textOffset;
+    return true;
+  }
+
+  public boolean remove(long id) {
+    int slot = Arrays.binarySearch(ids, 0, size, id);
+    if (slot < 0) {
+      return false;
+    }
+    textGarbage += recordLength(textOffsets[slot]);
+    int moved = size - slot - 1;
+    System.arraycopy(ids, slot + 1, ids, slot, moved);
+    System.arraycopy(versions, slot + 1, versions, slot, moved);
+    System.arraycopy(statuses, slot + 1, statuses, slot, moved);
+    System.arraycopy(creationDays, slot + 1, creationDays, slot, moved);
+    System.arraycopy(birthdays, slot + 1, birthdays, slot, moved);
+    System.arraycopy(textOffsets, slot + 1, textOffsets, slot, moved);
+    size--;
+    creationOrderValid = false;
+    return true;
+  }
+
+  public boolean contains(long id) {
+    return Arrays.binarySearch(ids, 0, size, id) >= 0;
+  }
+
+  //the user without its password, null if there is none with the id
+  public User get(long id) {
+    int slot = Arrays.binarySearch(ids, 0, size, id);
+    return slot < 0 ? null : toUser(slot);
+  }
+
+  public List<User> all() {
+    List<User> users = new ArrayList<>(size);
+    for (int slot = 0; slot < size; slot++) {
+      users.add(toUser(slot));
+    }
+    return users;
+  }
+
+  //the users with an id above the given one, in the order of the ids
+  public List<User> afterId(long afterId, int limit) {
+    List<User> users = new ArrayList<>(Math.min(limit, size));
+    int slot = Arrays.binarySearch(ids, 0, size, afterId);
+    slot = slot >= 0 ? slot + 1 : -slot - 1;
+    int end = (int) Math.min(size, (long) slot + limit);
+    for (; slot < end; slot++) {
+      users.add(toUser(slot));
+    }
+    return users;
+  }
+
+  public boolean hasCreationOrder() {
+    return creationOrderValid;
+  }
+
+  /**
+   * The users created after the given date and id, in the order of the
+   * creation dates and the ids. A creation date of null starts at the first
+   * user.
+   */
+  public List<User> createdAfter(LocalDate creationDate, long afterId, int limit) {
+    ensureCreationOrder();
+    List<User> users = new ArrayList<>(Math.min(limit, size));
+    int position = creationDate == null ? 0 : firstCreatedAfter(epochDay(creationDate), afterId);
+    int end = (int) Math.min(size, (long) position + limit);
+    for (; position < end; position++) {
+      users.add(toUser(creationOrder[position]));
+    }
+    return users;
+  }
+
+  //number of ids that are missing on either side or whose columns differ
+  public int differences(CompactUserTable other) {
+    int differences = 0;
+    int a = 0;
+    int b = 0;
+    while (a < size || b < other.size) {
+      if (b == other.size || (a < size && ids[a] < other.ids[b])) {
+        differences++;
+        a++;
+      }
+      else if (a == size || ids[a] > other.ids[b]) {
+        differences++;
+        b++;
+      }
+      else {
+        if (!sameRow(a, other, b)) {
+          differences++;
+        }
+        a++;
+        b++;
+      }
+    }
+    return differences;
+  }
+
+  //bytes taken by the arrays, including the capacity not used yet
+  public long footprintBytes() {
+    return arrayBytes(ids.length, Long.BYTES) + arrayBytes(versions.length, Long.BYTES)
+        + arrayBytes(statuses.length, Byte.BYTES) + arrayBytes(creationDays.length, Integer.BYTES)
+        + arrayBytes(birthdays.length, Integer.BYTES)
+        + arrayBytes(textOffsets.length, Integer.BYTES) + arrayBytes(text.length, Byte.BYTES)
+        + arrayBytes(creationOrder.length, Integer.BYTES);
+  }
+
+  private User toUser(int slot) {
+    User user = new User();
+    user.setId(ids[slot]);
+    int offset = textOffsets[slot];
+    user.setUsername(readText(offset));
+    user.setToken(readText(offset + 2 + textBytes(offset)));
+    user.setStatus(statuses[slot] == NO_STATUS ? null : STATUSES[statuses[slot]]);
+    user.setCreationDate(date(creationDays[slot]));
+    user.setBirthday(date(birthdays[slot]));
+    return user;
+  }
+
+  private boolean sameRow(int slot, CompactUserTable other, int otherSlot) {
+    int offset = textOffsets[slot];
+    int otherOffset = other.textOffsets[otherSlot];
+    return versions[slot] == other.versions[otherSlot]
+        && statuses[slot] == other.statuses[otherSlot]
+        && creationDays[slot] == other.creationDays[otherSlot]
+        && birthdays[slot] == other.birthdays[otherSlot]
+        && Arrays.equals(text, offset, offset + recordLength(offset),
+            other.text, otherOffset, otherOffset + other.recordLength(otherOffset));
+  }
+
+  private void insertSlot(int slot) {
+    if (size == ids.length) {
+      int capacity = size + (size >> 1);
+      ids = Arrays.copyOf(ids, capacity);
+      versions = Arrays.copyOf(versions, capacity);
+      statuses = Arrays.copyOf(statuses, capacity);
+      creationDays = Arrays.copyOf(creationDays, capacity);
+      birthdays = Arrays.copyOf(birthdays, capacity);
+      textOffsets = Arrays.copyOf(textOffsets, capacity);
+    }
+    int moved = size - slot;
+    if (moved > 0) {
+      System.arraycopy(ids, slot, ids, slot + 1, moved);
+      System.arraycopy(versions, slot, versions, slot + 1, moved);
+      System.arraycopy(statuses, slot, statuses, slot + 1, moved);
+      System.arraycopy(creationDays, slot, creationDays, slot + 1, moved);
+      System.arraycopy(birthdays, slot, birthdays, slot + 1, moved);
+      System.arraycopy(textOffsets, slot, textOffsets, slot + 1, moved);
+      // the slots behind it moved
+      creationOrderValid = false;
+    }
+    size++;
+  }
+
+  // new users usually have the highest id and the latest creation date, so the order only grows at its end
+  private void appendToCreationOrder(int slot) {
+    if (!creationOrderValid) {
+      return;
+    }
+    int last = size - 2;
+    if (slot != size - 1
+        || (last >= 0 && creationDays[creationOrder[last]] > creationDays[slot])) {
+      creationOrderValid = false;
+      return;
+    }
+    if (creationOrder.length < size) {
+      creationOrder = Arrays.copyOf(creationOrder, ids.length);
+    }
+    creationOrder[slot] = slot;
+  }
+
+  private void ensureCreationOrder() {
+    if (creationOrderValid) {
+      return;
+    }
+    // the slots are in the order of the ids, so ordering by (day, slot) orders by (day, id)
+    long[] keys = new long[size];
+    for (int slot = 0; slot < size; slot++) {
+      keys[slot] = sortKey(creationDays[slot], slot);
+    }
+    Arrays.sort(keys);
+    creationOrder = new int[ids.length];
+    for (int position = 0; position < size; position++) {
+      creationOrder[position] = (int) keys[position];
+    }
+    creationOrderValid = true;
+  }
+
+  // position of the first user created after the day or on the day with a higher id
+  private int firstCreatedAfter(int day, long afterId) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int slot = creationOrder[middle];
+      if (creationDays[slot] < day || (creationDays[slot] == day && ids[slot] <= afterId)) {
+        low = middle + 1;
+      }
+      else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static long sortKey(int value, int slot) {
+    return ((long) value << 32) | slot;
+  }
+
+  private int appendText(String username, String token) {
+    byte[] usernameBytes = username == null ? null : username.getBytes(StandardCharsets.UTF_8);
+    byte[] tokenBytes = token == null ? null : token.getBytes(StandardCharsets.UTF_8);
+    int length = 4 + (usernameBytes == null ? 0 : usernameBytes.length) + (tokenBytes == null ? 0 : tokenBytes.length);
+    if (textGarbage > textLength / 2 && textLength > 4096) {
+      compactText();
+    }
+    if (textLength + length > text.length) {
+      text = Arrays.copyOf(text, Math.max(textLength + length, text.length + (text.length >> 1)));
+    }
+    int offset = textLength;
+    int position = writeText(offset, usernameBytes);
+    textLength = writeText(position, tokenBytes);
+    return offset;
+  }
+
+  private int writeText(int position, byte[] bytes) {
+    int length = bytes == null ? NULL_TEXT : bytes.length;
+    text[position] = (byte) (length >>> 8);
+    text[position + 1] = (byte) length;
+    if (bytes != null) {
+      System.arraycopy(bytes, 0, text, position + 2, bytes.length);
+      return position + 2 + bytes.length;
+    }
+    return position + 2;
+  }
+
+  private String readText(int position) {
+    int length = ((text[position] & 0xFF) << 8) | (text[position + 1] & 0xFF);
+    return length == NULL_TEXT ? null : new String(text, position + 2, length, StandardCharsets.UTF_8);
+  }
+
+  private int textBytes(int position) {
+    int length = ((text[position] & 0xFF) << 8) | (text[position + 1] & 0xFF);
+    return length == NULL_TEXT ? 0 : length;
+  }
+
+  // length prefixed username followed by the length prefixed token
+  private int recordLength(int offset) {
+    int usernameBytes = textBytes(offset);
+    return 4 + usernameBytes + textBytes(offset + 2 + usernameBytes);
+  }
+
+  private void compactText() {
+    int live = 0;
+    for (int slot = 0; slot < size; slot++) {
+      live += recordLength(textOffsets[slot]);
+    }
+    byte[] compacted = new byte[Math.max(16, live + (live >> 2))];
+    int position = 0;
+    for (int slot = 0; slot < size; slot++) {
+      int offset = textOffsets[slot];
+      int length = recordLength(offset);
+      System.arraycopy(text, offset, compacted, position, length);
+      textOffsets[slot] = position;
+      position += length;
+    }
+    text = compacted;
+    textLength = position;
+    textGarbage = 0;
+  }
+
+  private static int epochDay(LocalDate date) {
+    return date == null ? NO_DATE : (int) date.toEpochDay();
+  }
+
+  private static LocalDate date(int epochDay) {
+    return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+  }
+
+  private static long arrayBytes(int length, int elementBytes) {
+    return ARRAY_HEADER_BYTES + (long) length * elementBytes;
+  }
+}
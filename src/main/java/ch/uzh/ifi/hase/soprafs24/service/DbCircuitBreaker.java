@@ -0,0 +1,188 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * DB Circuit Breaker
+ * Keeps the outcome of the last calls in a sliding window. Once enough calls
+ * were recorded and the rate of failed or slow calls crosses its threshold the
+ * breaker opens and calls are rejected without touching the database. After
+ * the open duration a few probe calls are let through (half open), they decide
+ * whether the breaker closes again or stays open.
+ * Every database call passes through here, the state is guarded by a lock
+ * rather than a monitor, so a virtual thread waiting for it does not pin its
+ * carrier thread.
+ */
+public class DbCircuitBreaker {
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private static final byte SUCCESS = 0;
+  private static final byte FAILURE = 1;
+  private static final byte SLOW = 2;
+
+  private final byte[] window;
+
+  private final int minimumCalls;
+
+  private final double failureRateThreshold;
+
+  private final double slowCallRateThreshold;
+
+  private final long slowCallNanos;
+
+  private final long openNanos;
+
+  private final int halfOpenCalls;
+
+  private final LongSupplier nanoClock;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // the following fields are guarded by the lock
+  private State state = State.CLOSED;
+
+  // position and fill of the window and the failed and slow calls currently in it
+  private int next;
+  private int recorded;
+  private int failures;
+  private int slowCalls;
+
+  private long openedAt;
+
+  private int probesStarted;
+  private int probesSucceeded;
+
+  private long transitionsToOpen;
+
+  public DbCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, double slowCallRateThreshold,
+                          long slowCallNanos, long openNanos, int halfOpenCalls, LongSupplier nanoClock) {
+    this.window = new byte[windowSize];
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallNanos = slowCallNanos;
+    this.openNanos = openNanos;
+    this.halfOpenCalls = halfOpenCalls;
+    this.nanoClock = nanoClock;
+  }
+
+  //whether a call may go to the database, every permitted call must be followed by onSuccess or onFailure
+  public boolean tryAcquire() {
+    lock.lock();
+    try {
+      if (state == State.OPEN) {
+        if (nanoClock.getAsLong() - openedAt < openNanos) {
+          return false;
+        }
+        state = State.HALF_OPEN;
+        probesStarted = 0;
+        probesSucceeded = 0;
+      }
+      if (state == State.HALF_OPEN) {
+        if (probesStarted >= halfOpenCalls) {
+          return false;
+        }
+        probesStarted++;
+      }
+      return true;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public void onSuccess(long durationNanos) {
+    record(durationNanos >= slowCallNanos ? SLOW : SUCCESS);
+  }
+
+  public void onFailure() {
+    record(FAILURE);
+  }
+
+  private void record(byte outcome) {
+    lock.lock();
+    try {
+      if (state == State.OPEN) {
+        // a call started before the breaker opened
+        return;
+      }
+      if (state == State.HALF_OPEN) {
+        if (outcome != SUCCESS) {
+          open();
+        }
+        else if (++probesSucceeded >= halfOpenCalls) {
+          close();
+        }
+        return;
+      }
+      if (recorded == window.length) {
+        forget(window[next]);
+      }
+      else {
+        recorded++;
+      }
+      window[next] = outcome;
+      next = (next + 1) % window.length;
+      if (outcome == FAILURE) {
+        failures++;
+      }
+      else if (outcome == SLOW) {
+        slowCalls++;
+      }
+      if (recorded >= minimumCalls
+          && ((double) failures / recorded >= failureRateThreshold || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+        open();
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  private void forget(byte outcome) {
+    if (outcome == FAILURE) {
+      failures--;
+    }
+    else if (outcome == SLOW) {
+      slowCalls--;
+    }
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAt = nanoClock.getAsLong();
+    transitionsToOpen++;
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    next = 0;
+    recorded = 0;
+    failures = 0;
+    slowCalls = 0;
+  }
+
+  public State getState() {
+    lock.lock();
+    try {
+      return state;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public long getTransitionsToOpen() {
+    lock.lock();
+    try {
+      return transitionsToOpen;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+}
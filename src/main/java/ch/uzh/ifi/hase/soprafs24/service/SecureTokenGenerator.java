@@ -0,0 +1,83 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Secure Token Generator
+ * Every thread draws its tokens from its own SecureRandom, so concurrent
+ * registrations do not wait for each other (UUID.randomUUID shares a single
+ * SecureRandom). The default DRBG keeps its state per instance, unlike the
+ * NativePRNG which locks one shared source. Virtual threads live for a single
+ * request, a SecureRandom of their own would be created and seeded for every
+ * registration: they draw from a few shared instances instead.
+ * The tokens are base64url encoded without padding, e.g. 43 characters for
+ * the default of 32 random bytes (256 bits).
+ */
+@Component
+public class SecureTokenGenerator implements TokenGenerator {
+
+  public static final int MIN_BYTES = 16;
+
+  public static final int MAX_BYTES = 64;
+
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+  private final int tokenBytes;
+
+  private final String algorithm;
+
+  private final ThreadLocal<SecureRandom> randoms;
+
+  // one per core for the virtual threads, picked at random so that they rarely wait for each other
+  private final SecureRandom[] shared;
+
+  public SecureTokenGenerator(@Value("${users.token.bytes:32}") int tokenBytes,
+                              @Value("${users.token.algorithm:DRBG}") String algorithm) {
+    if (tokenBytes < MIN_BYTES || tokenBytes > MAX_BYTES) {
+      throw new IllegalArgumentException("users.token.bytes must be between " + MIN_BYTES + " and " + MAX_BYTES + ": " + tokenBytes);
+    }
+    this.tokenBytes = tokenBytes;
+    this.algorithm = algorithm;
+    // fails at startup instead of on the first registration if the algorithm is not available
+    newRandom();
+    this.randoms = ThreadLocal.withInitial(this::newRandom);
+    this.shared = new SecureRandom[VirtualThreads.isSupported() ? Runtime.getRuntime().availableProcessors() : 0];
+    for (int i = 0; i < shared.length; i++) {
+      shared[i] = newRandom();
+    }
+  }
+
+  @Override
+  public String nextToken() {
+    byte[] bytes = new byte[tokenBytes];
+    random().nextBytes(bytes);
+    return ENCODER.encodeToString(bytes);
+  }
+
+  public int getTokenLength() {
+    return (tokenBytes * 8 + 5) / 6;
+  }
+
+  private SecureRandom random() {
+    if (shared.length > 0 && VirtualThreads.isVirtual(Thread.currentThread())) {
+      return shared[ThreadLocalRandom.current().nextInt(shared.length)];
+    }
+    return randoms.get();
+  }
+
+  private SecureRandom newRandom() {
+    try {
+      return SecureRandom.getInstance(algorithm);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("users.token.algorithm " + algorithm + " is not available", e);
+    }
+  }
+}
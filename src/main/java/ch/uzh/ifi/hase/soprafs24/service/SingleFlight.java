@@ -0,0 +1,73 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single Flight
+ * Coalesces concurrent calls with the same key: the first caller runs the
+ * loader, callers arriving while it is in flight wait for its result (or its
+ * exception) instead of running the loader themselves. Nothing is kept once
+ * the call completed, a later caller runs the loader again.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder executions = new LongAdder();
+
+  private final LongAdder shared = new LongAdder();
+
+  public V execute(K key, Supplier<V> loader) {
+    CompletableFuture<V> call = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+    if (running != null) {
+      shared.increment();
+      return await(running);
+    }
+    executions.increment();
+    V value;
+    try {
+      value = loader.get();
+    }
+    catch (RuntimeException | Error e) {
+      inFlight.remove(key, call);
+      call.completeExceptionally(e);
+      throw e;
+    }
+    // removed before completing, callers arriving from now on start a new call instead of getting this result
+    inFlight.remove(key, call);
+    call.complete(value);
+    return value;
+  }
+
+  private V await(CompletableFuture<V> running) {
+    try {
+      return running.join();
+    }
+    catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  //calls that ran the loader
+  public long getExecutions() {
+    return executions.sum();
+  }
+
+  //calls that got the result of a call already in flight
+  public long getShared() {
+    return shared.sum();
+  }
+}
@@ -0,0 +1,14 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+/**
+ * Token Generator
+ * Creates the tokens handed out on registration. The tokens authorize access
+ * to a user, so they must be unpredictable. Must be safe to call from many
+ * threads at once.
+ *
+ * @see SecureTokenGenerator
+ */
+public interface TokenGenerator {
+
+  String nextToken();
+}
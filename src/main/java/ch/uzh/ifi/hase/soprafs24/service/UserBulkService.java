@@ -0,0 +1,226 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserExportDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserImportResultDTO;
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * User Bulk Service
+ * Exports the USER table as NDJSON (one user per line) and imports such files
+ * again. The export streams the rows from a forward-only cursor straight into
+ * the output and the import inserts fixed-size chunks with one JDBC batch and
+ * one commit each, so the memory used does not depend on the number of users.
+ * Goes through JDBC directly, the persistence context would otherwise keep
+ * every user it has seen.
+ */
+@Service
+public class UserBulkService {
+
+  private static final String SELECT_USERS =
+      "select id, username, password, token, status, creation_date, birthday, version from user order by id";
+
+  private static final String INSERT_USER =
+      "insert into user (id, username, password, token, status, creation_date, birthday, birthday_day_of_year, version)"
+          + " values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private final Logger log = LoggerFactory.getLogger(UserBulkService.class);
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final ObjectMapper objectMapper;
+
+  private final int chunkSize;
+
+  private final UserReadModel userReadModel;
+
+  private final UserChangePublisher userChangePublisher;
+
+  public UserBulkService(DataSource dataSource, PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                         UserReadModel userReadModel, UserChangePublisher userChangePublisher,
+                         @Value("${users.bulk.fetch-size:500}") int fetchSize,
+                         @Value("${users.bulk.chunk-size:1000}") int chunkSize) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.jdbcTemplate.setFetchSize(fetchSize);
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.objectMapper = objectMapper;
+    this.chunkSize = chunkSize;
+    this.userReadModel = userReadModel;
+    this.userChangePublisher = userChangePublisher;
+  }
+
+  //writes every user as one JSON line and returns the number of users written
+  public long exportUsers(OutputStream out) throws IOException {
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.setRootValueSeparator(null);
+    long[] rows = { 0 };
+    try {
+      jdbcTemplate.query(SELECT_USERS, resultSet -> {
+        writeLine(generator, resultSet);
+        rows[0]++;
+      });
+    }
+    catch (UncheckedIOException e) {
+      // the client went away
+      throw e.getCause();
+    }
+    finally {
+      generator.flush();
+    }
+    log.info("Exported {} users", rows[0]);
+    return rows[0];
+  }
+
+  //reads one user per line and inserts them chunk by chunk, every chunk is committed on its own
+  public UserImportResultDTO importUsers(InputStream in) throws IOException {
+    // highest id of the chunks committed, also when a later chunk or line fails
+    long[] committedMaxId = { 0 };
+    try {
+      return insertUsers(in, committedMaxId);
+    }
+    finally {
+      if (committedMaxId[0] > 0) {
+        advanceIdSequence(committedMaxId[0]);
+      }
+      // the chunks committed so far bypassed the UserService, the other instances learn about them from the outbox
+      transactionTemplate.executeWithoutResult(status -> userChangePublisher.allUsersChanged());
+      userReadModel.refresh();
+    }
+  }
+
+  private UserImportResultDTO insertUsers(InputStream in, long[] committedMaxId) throws IOException {
+    long start = System.currentTimeMillis();
+    long rows = 0;
+    long chunks = 0;
+    long chunkMaxId = 0;
+    List<Object[]> chunk = new ArrayList<>(chunkSize);
+    try (MappingIterator<UserExportDTO> users = objectMapper.readerFor(UserExportDTO.class).readValues(in)) {
+      while (users.hasNextValue()) {
+        UserExportDTO user = users.nextValue();
+        validate(user, rows + chunk.size() + 1);
+        chunk.add(toRow(user));
+        chunkMaxId = Math.max(chunkMaxId, user.getId());
+        if (chunk.size() == chunkSize) {
+          rows += insertChunk(chunk, rows);
+          chunks++;
+          committedMaxId[0] = Math.max(committedMaxId[0], chunkMaxId);
+          chunkMaxId = 0;
+          log.info("Imported {} users ({} rows/s)", rows, rowsPerSecond(rows, start));
+        }
+      }
+    }
+    if (!chunk.isEmpty()) {
+      rows += insertChunk(chunk, rows);
+      chunks++;
+      committedMaxId[0] = Math.max(committedMaxId[0], chunkMaxId);
+    }
+    long millis = System.currentTimeMillis() - start;
+    log.info("Imported {} users in {} chunks within {} ms ({} rows/s)", rows, chunks, millis, rowsPerSecond(rows, start));
+    return new UserImportResultDTO(rows, chunks, millis);
+  }
+
+  private int insertChunk(List<Object[]> chunk, long rowsBefore) {
+    try {
+      transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_USER, chunk));
+    }
+    catch (DataAccessException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT,
+          "Import stopped after " + rowsBefore + " users, the next chunk could not be inserted", e);
+    }
+    int size = chunk.size();
+    chunk.clear();
+    return size;
+  }
+
+  private void validate(UserExportDTO user, long line) {
+    if (user.getId() == null || user.getUsername() == null || user.getPassword() == null || user.getToken() == null
+        || user.getStatus() == null || user.getCreationDate() == null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Line " + line + " is missing a required field");
+    }
+    if (UserRules.isUsernameTooLong(user.getUsername())) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Line " + line + ": " + UserRules.USERNAME_TOO_LONG);
+    }
+  }
+
+  //imported ids are kept, so new users must get ids above the highest imported one
+  private void advanceIdSequence(long maxId) {
+    Long next = jdbcTemplate.queryForObject("select next value for hibernate_sequence", Long.class);
+    if (next != null && next <= maxId) {
+      jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + (maxId + 1));
+    }
+  }
+
+  private static Object[] toRow(UserExportDTO user) {
+    return new Object[] {
+        user.getId(),
+        user.getUsername(),
+        user.getPassword(),
+        user.getToken(),
+        // the status is stored by its ordinal, see User
+        user.getStatus().ordinal(),
+        Date.valueOf(user.getCreationDate()),
+        user.getBirthday() == null ? null : Date.valueOf(user.getBirthday()),
+        // derived from the birthday, it is not part of the export
+        User.dayOfLeapYear(user.getBirthday()),
+        user.getVersion() == null ? 0L : user.getVersion()
+    };
+  }
+
+  private static void writeLine(JsonGenerator generator, ResultSet resultSet) throws SQLException {
+    try {
+      generator.writeStartObject();
+      generator.writeNumberField("id", resultSet.getLong("id"));
+      generator.writeStringField("username", resultSet.getString("username"));
+      generator.writeStringField("password", resultSet.getString("password"));
+      generator.writeStringField("token", resultSet.getString("token"));
+      generator.writeStringField("status", UserStatus.values()[resultSet.getInt("status")].name());
+      writeDateField(generator, "creationDate", resultSet.getDate("creation_date"));
+      writeDateField(generator, "birthday", resultSet.getDate("birthday"));
+      generator.writeNumberField("version", resultSet.getLong("version"));
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeDateField(JsonGenerator generator, String name, Date date) throws IOException {
+    LocalDate localDate = date == null ? null : date.toLocalDate();
+    generator.writeStringField(name, localDate == null ? null : localDate.toString());
+  }
+
+  private static long rowsPerSecond(long rows, long start) {
+    long millis = Math.max(1, System.currentTimeMillis() - start);
+    return rows * 1000 / millis;
+  }
+}
@@ -0,0 +1,77 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * User Cache
+ * Instance local cache of users by id. Entries are evicted after a local
+ * mutation committed and, for mutations on other instances, once the
+ * UserOutboxPoller picked them up. At most users.cache.max-users are kept,
+ * the rarely used ones are dropped first.
+ * Cached users are shared between requests and must be treated as read-only.
+ */
+@Component
+public class UserCache {
+
+  private final ConcurrentMap<Long, User> usersById;
+
+  // incremented on every invalidation, a load that overlaps with one is not cached
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public UserCache(@Value("${users.cache.max-users:10000}") long maxUsers) {
+    // evicts on the calling thread instead of the common pool
+    this.usersById = Caffeine.newBuilder()
+        .maximumSize(maxUsers)
+        .executor(Runnable::run)
+        .<Long, User>build()
+        .asMap();
+  }
+
+  public User get(Long id) {
+    return usersById.get(id);
+  }
+
+  //has to be read before loading the user from the database
+  public long stamp() {
+    return invalidations.get();
+  }
+
+  //caches the loaded user unless an invalidation happened since the stamp was taken
+  public void putIfUnchanged(User user, long stamp) {
+    usersById.put(user.getId(), user);
+    if (invalidations.get() != stamp) {
+      usersById.remove(user.getId(), user);
+    }
+  }
+
+  public void evict(Long id) {
+    invalidations.incrementAndGet();
+    usersById.remove(id);
+  }
+
+  public void clear() {
+    invalidations.incrementAndGet();
+    usersById.clear();
+  }
+
+  public int size() {
+    return usersById.size();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.isAll()) {
+      clear();
+    }
+    else {
+      evict(event.getUserId());
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.UserOutboxEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.UserOutboxRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * User Change Publisher
+ * Records a user mutation in the outbox table (so that it commits or rolls back
+ * together with the mutation itself) and publishes a local UserChangedEvent
+ * which the listeners only receive after the commit.
+ */
+@Component
+public class UserChangePublisher {
+
+  // identifies this application instance in the outbox
+  private final String instanceId = UUID.randomUUID().toString();
+
+  private final UserOutboxRepository userOutboxRepository;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  public UserChangePublisher(@Qualifier("userOutboxRepository") UserOutboxRepository userOutboxRepository,
+                             ApplicationEventPublisher eventPublisher) {
+    this.userOutboxRepository = userOutboxRepository;
+    this.eventPublisher = eventPublisher;
+  }
+
+  public String getInstanceId() {
+    return instanceId;
+  }
+
+  //must be called inside the transaction that mutates the user
+  public void userChanged(Long userId) {
+    userOutboxRepository.save(new UserOutboxEvent(userId, instanceId));
+    eventPublisher.publishEvent(new UserChangedEvent(userId));
+  }
+
+  //for changes that bypassed the UserService (e.g. an import), must be called inside a transaction as well
+  public void allUsersChanged() {
+    userOutboxRepository.save(new UserOutboxEvent(null, instanceId));
+    eventPublisher.publishEvent(UserChangedEvent.all());
+  }
+}
@@ -0,0 +1,46 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+/**
+ * User Changed Event
+ * Published whenever a user was created or modified, either by this instance
+ * (after the local transaction committed) or by another instance (once its
+ * outbox row was picked up by the UserOutboxPoller).
+ * A userId of null means that all users have to be considered stale.
+ * Remote events stem from another instance, the user has to be read again to
+ * know its new state.
+ */
+public class UserChangedEvent {
+
+  private final Long userId;
+
+  private final boolean remote;
+
+  public UserChangedEvent(Long userId) {
+    this(userId, false);
+  }
+
+  private UserChangedEvent(Long userId, boolean remote) {
+    this.userId = userId;
+    this.remote = remote;
+  }
+
+  public static UserChangedEvent all() {
+    return new UserChangedEvent(null);
+  }
+
+  public static UserChangedEvent remote(Long userId) {
+    return new UserChangedEvent(userId, true);
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public boolean isAll() {
+    return userId == null;
+  }
+
+  public boolean isRemote() {
+    return remote;
+  }
+}
@@ -0,0 +1,62 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * User Constraints
+ * The unique constraints of the USER table (declared on the User) decide
+ * whether a username or token is taken, instead of looking them up before
+ * writing. This class translates their violations into the 409 answers.
+ * A write that ran into an uncommitted change of the same row is reported as a
+ * concurrent modification instead, so the UserUpdateRetryPolicy repeats it and
+ * the retried flush decides whether the name is taken.
+ */
+public final class UserConstraints {
+
+  public static final String USERNAME = "UK_USER_USERNAME";
+
+  public static final String TOKEN = "UK_USER_TOKEN";
+
+  public static final String TOKEN_EXISTS = "Token already in use, please retry";
+
+  // SQL state of a unique violation
+  private static final String UNIQUE_VIOLATION = "23505";
+
+  // H2 reports a row (or a duplicate key) changed by a transaction that is not committed yet right away instead of waiting for it
+  private static final int H2_CONCURRENT_UPDATE = 90131;
+
+  private UserConstraints() {
+  }
+
+  //the 409 for a violated unique constraint, an optimistic lock failure for a concurrent update, null if the exception is something else
+  public static RuntimeException translate(DataAccessException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (!(cause instanceof SQLException)) {
+        continue;
+      }
+      SQLException sqlException = (SQLException) cause;
+      if (sqlException.getErrorCode() == H2_CONCURRENT_UPDATE) {
+        return new OptimisticLockingFailureException("User was modified concurrently", e);
+      }
+      if (!UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+        continue;
+      }
+      // other unique violations (e.g. of the primary key) are no taken username
+      String message = String.valueOf(sqlException.getMessage()).toUpperCase(Locale.ROOT);
+      if (message.contains(TOKEN)) {
+        return new ResponseStatusException(HttpStatus.CONFLICT, TOKEN_EXISTS, e);
+      }
+      if (message.contains(USERNAME)) {
+        return new ResponseStatusException(HttpStatus.CONFLICT, UserRules.USERNAME_EXISTS, e);
+      }
+    }
+    return null;
+  }
+}
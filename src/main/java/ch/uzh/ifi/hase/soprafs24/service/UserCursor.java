@@ -0,0 +1,81 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * User Cursor
+ * Keyset position in a user listing: the sort key of the last user of a page
+ * and its id as tie breaker. The next page starts right after it, so paging
+ * deep into a listing costs the same as reading the first page. Encoded as
+ * "<id>" when sorting by id and "<creationDate>_<id>" when sorting by
+ * creationDate.
+ */
+public final class UserCursor {
+
+  public static final String SORT_ID = "id";
+
+  public static final String SORT_CREATION_DATE = "creationDate";
+
+  private final String sort;
+
+  // null on the first page
+  private final LocalDate creationDate;
+
+  private final long id;
+
+  private UserCursor(String sort, LocalDate creationDate, long id) {
+    this.sort = sort;
+    this.creationDate = creationDate;
+    this.id = id;
+  }
+
+  public static UserCursor parse(String sort, String after) {
+    String sortKey = sort == null ? SORT_ID : sort;
+    if (!SORT_ID.equals(sortKey) && !SORT_CREATION_DATE.equals(sortKey)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sort must be id or creationDate");
+    }
+    if (after == null || after.isEmpty()) {
+      return new UserCursor(sortKey, null, 0);
+    }
+    try {
+      if (SORT_ID.equals(sortKey)) {
+        return new UserCursor(sortKey, null, Long.parseLong(after));
+      }
+      int separator = after.lastIndexOf('_');
+      return new UserCursor(sortKey, LocalDate.parse(after.substring(0, separator)),
+          Long.parseLong(after.substring(separator + 1)));
+    }
+    catch (NumberFormatException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + after);
+    }
+  }
+
+  //cursor pointing right after the given user
+  public static String encode(String sort, User user) {
+    if (SORT_CREATION_DATE.equals(sort)) {
+      return user.getCreationDate() + "_" + user.getId();
+    }
+    return String.valueOf(user.getId());
+  }
+
+  public String getSort() {
+    return sort;
+  }
+
+  public boolean isFirstPage() {
+    return SORT_ID.equals(sort) ? id == 0 : creationDate == null;
+  }
+
+  public LocalDate getCreationDate() {
+    return creationDate;
+  }
+
+  public long getId() {
+    return id;
+  }
+}
@@ -0,0 +1,167 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.DbOperation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * User DB Guard
+ * Every database call of the UserService passes through here. Reads, writes
+ * and logins each have their own bulkhead (a bounded number of concurrent
+ * calls) and query timeout, so a slow database can only tie up a limited
+ * number of request threads and the remaining ones keep answering (e.g. "/").
+ * A circuit breaker shared by all operations rejects calls with 503 while the
+ * database is failing or slow. Breaker state and rejections are exported as
+ * metrics (users.db.*).
+ */
+@Component
+public class UserDbGuard {
+
+  private final Map<DbOperation, Semaphore> bulkheads = new EnumMap<>(DbOperation.class);
+
+  private final Map<DbOperation, Integer> timeoutSeconds = new EnumMap<>(DbOperation.class);
+
+  private final Map<DbOperation, TransactionTemplate> transactionTemplates = new EnumMap<>(DbOperation.class);
+
+  private final Map<DbOperation, Counter> bulkheadRejections = new EnumMap<>(DbOperation.class);
+
+  private final Map<DbOperation, Counter> breakerRejections = new EnumMap<>(DbOperation.class);
+
+  private final DbCircuitBreaker circuitBreaker;
+
+  private final UserUpdateRetryPolicy userUpdateRetryPolicy;
+
+  private final long bulkheadWaitMillis;
+
+  // the settings per operation are read as users.db.<operation>.*, e.g. users.db.read.max-concurrent
+  public UserDbGuard(PlatformTransactionManager transactionManager, UserUpdateRetryPolicy userUpdateRetryPolicy,
+                     MeterRegistry meterRegistry, Environment environment) {
+    this.userUpdateRetryPolicy = userUpdateRetryPolicy;
+    this.bulkheadWaitMillis = environment.getProperty("users.db.bulkhead-wait-ms", Long.class, 50L);
+    this.circuitBreaker = new DbCircuitBreaker(
+        environment.getProperty("users.db.breaker.window", Integer.class, 50),
+        environment.getProperty("users.db.breaker.minimum-calls", Integer.class, 20),
+        environment.getProperty("users.db.breaker.failure-rate", Double.class, 0.5),
+        environment.getProperty("users.db.breaker.slow-call-rate", Double.class, 0.8),
+        TimeUnit.MILLISECONDS.toNanos(environment.getProperty("users.db.breaker.slow-call-ms", Long.class, 1000L)),
+        TimeUnit.MILLISECONDS.toNanos(environment.getProperty("users.db.breaker.open-ms", Long.class, 5000L)),
+        environment.getProperty("users.db.breaker.half-open-calls", Integer.class, 3),
+        System::nanoTime);
+
+    for (DbOperation operation : DbOperation.values()) {
+      String prefix = "users.db." + operation.name().toLowerCase(Locale.ROOT);
+      Semaphore bulkhead = new Semaphore(environment.getProperty(prefix + ".max-concurrent", Integer.class, 20));
+      int timeout = environment.getProperty(prefix + ".timeout-s", Integer.class, 5);
+      TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+      transactionTemplate.setTimeout(timeout);
+      transactionTemplate.setReadOnly(operation == DbOperation.READ);
+
+      bulkheads.put(operation, bulkhead);
+      timeoutSeconds.put(operation, timeout);
+      transactionTemplates.put(operation, transactionTemplate);
+      bulkheadRejections.put(operation, rejectionCounter(meterRegistry, operation, "bulkhead"));
+      breakerRejections.put(operation, rejectionCounter(meterRegistry, operation, "breaker"));
+      Gauge.builder("users.db.bulkhead.available", bulkhead, Semaphore::availablePermits)
+          .tag("operation", operation.name())
+          .description("Free slots of the bulkhead")
+          .register(meterRegistry);
+    }
+    Gauge.builder("users.db.breaker.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+        .description("0 closed, 1 open, 2 half open")
+        .register(meterRegistry);
+    FunctionCounter.builder("users.db.breaker.opened", circuitBreaker, DbCircuitBreaker::getTransitionsToOpen)
+        .description("How often the circuit breaker opened")
+        .register(meterRegistry);
+  }
+
+  private static Counter rejectionCounter(MeterRegistry meterRegistry, DbOperation operation, String reason) {
+    return Counter.builder("users.db.rejections")
+        .tag("operation", operation.name())
+        .tag("reason", reason)
+        .description("Calls answered with 503 without reaching the database")
+        .register(meterRegistry);
+  }
+
+  //runs the call in a transaction with the timeout of the operation (joins a transaction that is already running)
+  public <T> T execute(DbOperation operation, Supplier<T> call) {
+    return guarded(operation, () -> transactionTemplates.get(operation).execute(status -> call.get()));
+  }
+
+  //runs a read-modify-write through the UserUpdateRetryPolicy, retries happen within the same bulkhead slot
+  public <T, E extends Exception> T executeUpdate(DbOperation operation, UserUpdateRetryPolicy.Attempt<T, E> attempt) throws E {
+    return guarded(operation, () -> userUpdateRetryPolicy.execute(timeoutSeconds.get(operation), attempt));
+  }
+
+  private <T, E extends Exception> T guarded(DbOperation operation, UserUpdateRetryPolicy.Attempt<T, E> call) throws E {
+    Semaphore bulkhead = bulkheads.get(operation);
+    if (!acquire(bulkhead)) {
+      bulkheadRejections.get(operation).increment();
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent requests, please retry");
+    }
+    // the breaker is asked after the bulkhead, so a permitted probe call is never dropped on a full bulkhead
+    if (!circuitBreaker.tryAcquire()) {
+      bulkhead.release();
+      breakerRejections.get(operation).increment();
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Database unavailable, please retry later");
+    }
+    long start = System.nanoTime();
+    boolean failed = false;
+    try {
+      return call.run();
+    }
+    catch (RuntimeException e) {
+      failed = isDatabaseFailure(e);
+      throw e;
+    }
+    finally {
+      if (failed) {
+        circuitBreaker.onFailure();
+      }
+      else {
+        circuitBreaker.onSuccess(System.nanoTime() - start);
+      }
+      bulkhead.release();
+    }
+  }
+
+  private boolean acquire(Semaphore bulkhead) {
+    try {
+      return bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  // lost races against other users are answers of a healthy database, timeouts and connection problems are not
+  static boolean isDatabaseFailure(RuntimeException e) {
+    if (e instanceof OptimisticLockingFailureException || e instanceof DataIntegrityViolationException) {
+      return false;
+    }
+    return e instanceof DataAccessException || e instanceof TransactionException;
+  }
+
+  public DbCircuitBreaker.State getBreakerState() {
+    return circuitBreaker.getState();
+  }
+}
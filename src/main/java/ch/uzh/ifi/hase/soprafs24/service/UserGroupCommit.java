@@ -0,0 +1,372 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.DbOperation;
+import ch.uzh.ifi.hase.soprafs24.monitoring.RequestAttribution;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * User Group Commit
+ * Opt-in (users.groupcommit.enabled) merging of concurrent user mutations into
+ * one transaction. The first mutation opens a group and its caller becomes the
+ * leader: while other writes are committing it waits for more mutations, as
+ * long as they keep arriving within window-ms of each other, but never longer
+ * than max-wait-ms after the group was opened (the latency cap) and never for
+ * more than max-batch mutations. Without concurrent writes the group is
+ * committed right away, so a single request does not wait.
+ * The leader applies the mutations of the group one after another in a single
+ * transaction. They skip their own flush (see isApplying), and their lookups
+ * do not flush the changes of the mutations before them either: the group is
+ * flushed once, as one JDBC batch per statement, and committed. Every caller gets its own
+ * result:
+ * - a mutation rejected on its own (a ResponseStatusException, e.g. a wrong
+ *   token) gets its error, the rest of the group is applied again without it
+ * - if the flush or the commit fails (e.g. a taken username or a concurrent
+ *   update), the group is rolled back and every caller runs its mutation
+ *   alone, so the error is reported to the caller it belongs to
+ * The statements and spans of a mutation are charged to the request of its
+ * caller (see RequestAttribution), the flush and commit of the group to the
+ * leader's.
+ * Callers already inside a transaction always run alone, in that transaction.
+ * Waiting callers are parked on locks and latches rather than monitors, so on
+ * virtual threads they release their carrier thread.
+ */
+@Component
+public class UserGroupCommit {
+
+  private static final ThreadLocal<Boolean> APPLYING = new ThreadLocal<>();
+
+  private final UserDbGuard userDbGuard;
+
+  private final EntityManagerFactory entityManagerFactory;
+
+  private final boolean enabled;
+
+  private final long windowNanos;
+
+  private final long maxWaitNanos;
+
+  private final int maxBatch;
+
+  private final DistributionSummary groupSizes;
+
+  private final Counter fallbacks;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // signalled when a mutation joined or a group committed
+  private final Condition changed = lock.newCondition();
+
+  // the group taking new mutations, guarded by the lock
+  private Group open;
+
+  // groups between being closed and committed, guarded by the lock
+  private int committing;
+
+  public UserGroupCommit(UserDbGuard userDbGuard, EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry,
+                         @Value("${users.groupcommit.enabled:false}") boolean enabled,
+                         @Value("${users.groupcommit.window-ms:2}") long windowMillis,
+                         @Value("${users.groupcommit.max-wait-ms:10}") long maxWaitMillis,
+                         @Value("${users.groupcommit.max-batch:64}") int maxBatch) {
+    this.userDbGuard = userDbGuard;
+    this.entityManagerFactory = entityManagerFactory;
+    this.enabled = enabled;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(windowMillis, maxWaitMillis));
+    this.maxBatch = Math.max(1, maxBatch);
+    this.groupSizes = DistributionSummary.builder("users.groupcommit.size")
+        .description("Mutations committed together in one transaction")
+        .register(meterRegistry);
+    this.fallbacks = Counter.builder("users.groupcommit.fallbacks")
+        .description("Groups rolled back, their mutations were run alone")
+        .register(meterRegistry);
+  }
+
+  //true while the current thread applies a mutation of a group, the mutation must not flush on its own
+  public static boolean isApplying() {
+    return APPLYING.get() != null;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Runs the mutation as part of a group, or alone if group commit is
+   * disabled, the caller is in a transaction or the group could not commit.
+   *
+   * @param mutation applied within the transaction of the group, it may run more than once
+   * @param alone    runs the mutation in a transaction of its own
+   */
+  public <T, E extends Exception> T execute(UserUpdateRetryPolicy.Attempt<T, E> mutation,
+                                            UserUpdateRetryPolicy.Attempt<T, E> alone) throws E {
+    if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()) {
+      return alone.run();
+    }
+    Member<T, E> member = new Member<>(mutation);
+    Group group;
+    boolean leader = false;
+    lock.lock();
+    try {
+      if (open == null) {
+        open = new Group(System.nanoTime());
+        leader = true;
+      }
+      group = open;
+      group.add(member);
+      if (group.members.size() >= maxBatch) {
+        close(group);
+      }
+      changed.signalAll();
+    }
+    finally {
+      lock.unlock();
+    }
+    if (leader) {
+      collect(group);
+      commit(group);
+    }
+    return member.await(alone);
+  }
+
+  // waits for more mutations while other groups are committing
+  private void collect(Group group) {
+    lock.lock();
+    try {
+      while (open == group && committing > 0) {
+        long now = System.nanoTime();
+        long deadline = Math.min(group.opened + maxWaitNanos, group.lastJoined + windowNanos);
+        if (now >= deadline) {
+          break;
+        }
+        try {
+          changed.awaitNanos(deadline - now);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+      if (open == group) {
+        close(group);
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  // guarded by the lock
+  private void close(Group group) {
+    open = null;
+    committing++;
+  }
+
+  private void commit(Group group) {
+    List<Member<?, ?>> remaining = new ArrayList<>(group.members);
+    try {
+      while (!remaining.isEmpty()) {
+        Member<?, ?> rejected = applyAndCommit(remaining);
+        if (rejected == null) {
+          groupSizes.record(remaining.size());
+          remaining.forEach(Member::committed);
+          remaining.clear();
+        }
+        else {
+          // only the rejected mutation fails, the group is applied again without it
+          rejected.rejected();
+          remaining.remove(rejected);
+        }
+      }
+    }
+    catch (RuntimeException | Error e) {
+      fallbacks.increment();
+      remaining.forEach(Member::runAlone);
+    }
+    finally {
+      lock.lock();
+      try {
+        committing--;
+        changed.signalAll();
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  // null once the group committed, the first mutation that rejected itself otherwise (the transaction is rolled back)
+  private Member<?, ?> applyAndCommit(List<Member<?, ?>> members) {
+    try {
+      return userDbGuard.execute(DbOperation.WRITE, () -> {
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        Session session = entityManager.unwrap(Session.class);
+        session.setJdbcBatchSize(members.size());
+        // a lookup of the next mutation would flush the changes of the previous ones to the same table one by one
+        FlushMode flushMode = session.getHibernateFlushMode();
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        APPLYING.set(Boolean.TRUE);
+        try {
+          for (Member<?, ?> member : members) {
+            boolean applied;
+            try (RequestAttribution.Attached attached = member.attribution.attach()) {
+              applied = member.apply();
+            }
+            if (!applied) {
+              throw new Rejected(member);
+            }
+          }
+        }
+        finally {
+          APPLYING.remove();
+          session.setHibernateFlushMode(flushMode);
+        }
+        session.flush();
+        return null;
+      });
+    }
+    catch (Rejected e) {
+      return e.member;
+    }
+  }
+
+  private static final class Group {
+
+    private final long opened;
+
+    private final List<Member<?, ?>> members = new ArrayList<>();
+
+    private long lastJoined;
+
+    private Group(long opened) {
+      this.opened = opened;
+      this.lastJoined = opened;
+    }
+
+    private void add(Member<?, ?> member) {
+      members.add(member);
+      lastJoined = System.nanoTime();
+    }
+  }
+
+  private static final class Member<T, E extends Exception> {
+
+    private final UserUpdateRetryPolicy.Attempt<T, E> mutation;
+
+    // the request of the caller, captured on its thread
+    private final RequestAttribution attribution = RequestAttribution.capture();
+
+    // written by the leader before the outcome is published
+    private T result;
+
+    private Exception error;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // published by the latch
+    private Outcome outcome;
+
+    private Member(UserUpdateRetryPolicy.Attempt<T, E> mutation) {
+      this.mutation = mutation;
+    }
+
+    // false if the mutation rejected itself, its error is kept
+    private boolean apply() {
+      try {
+        result = mutation.run();
+        return true;
+      }
+      catch (ResponseStatusException e) {
+        error = e;
+        return false;
+      }
+      catch (RuntimeException e) {
+        throw e;
+      }
+      catch (Exception e) {
+        // a checked exception of the mutation itself
+        error = e;
+        return false;
+      }
+    }
+
+    private void committed() {
+      complete(Outcome.COMMITTED);
+    }
+
+    private void rejected() {
+      complete(Outcome.REJECTED);
+    }
+
+    private void runAlone() {
+      complete(Outcome.RUN_ALONE);
+    }
+
+    private void complete(Outcome outcome) {
+      this.outcome = outcome;
+      done.countDown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T await(UserUpdateRetryPolicy.Attempt<T, E> alone) throws E {
+      boolean interrupted = false;
+      while (done.getCount() > 0) {
+        try {
+          done.await();
+        }
+        catch (InterruptedException e) {
+          // the leader completes every member, the result must not be lost
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      switch (outcome) {
+        case COMMITTED:
+          return result;
+        case REJECTED:
+          if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+          }
+          throw (E) error;
+        default:
+          return alone.run();
+      }
+    }
+  }
+
+  private enum Outcome {
+    COMMITTED, REJECTED, RUN_ALONE
+  }
+
+  // rolls the transaction of the group back
+  private static final class Rejected extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Member<?, ?> member;
+
+    private Rejected(Member<?, ?> member) {
+      super(null, null, false, false);
+      this.member = member;
+    }
+  }
+}
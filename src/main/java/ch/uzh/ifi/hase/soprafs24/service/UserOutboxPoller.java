@@ -0,0 +1,138 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.UserOutboxEvent;
+import ch.uzh.ifi.hase.soprafs24.repository.UserOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * User Outbox Poller
+ * Periodically reads the outbox rows written by other instances and publishes
+ * a UserChangedEvent for each of them, so the local caches converge within
+ * the poll interval.
+ * Outbox ids are handed out before commit, so a row with a lower id can become
+ * visible after a row with a higher id. Rows above the watermark are therefore
+ * re-read until they are older than the settle time and the ids already applied
+ * are remembered in the meantime.
+ * If polling fails for longer than the maximum lag all local user state is
+ * dropped, since it can no longer be proven to be fresh.
+ */
+@Component
+public class UserOutboxPoller {
+
+  private final Logger log = LoggerFactory.getLogger(UserOutboxPoller.class);
+
+  private final UserOutboxRepository userOutboxRepository;
+
+  private final UserChangePublisher userChangePublisher;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final long settleMillis;
+
+  private final long retentionMillis;
+
+  private final long maxLagMillis;
+
+  // every id below or equal to the watermark has been applied and is settled
+  private long watermark;
+
+  // ids above the watermark that have been applied already
+  private final NavigableSet<Long> applied = new TreeSet<>();
+
+  // (poll time, highest id seen) pairs that have not yet passed the settle time
+  private final Deque<long[]> pending = new ArrayDeque<>();
+
+  private long highestSeen;
+
+  private long lastSuccessfulPoll;
+
+  private long lastPrune;
+
+  private boolean initialized;
+
+  private boolean stale;
+
+  public UserOutboxPoller(@Qualifier("userOutboxRepository") UserOutboxRepository userOutboxRepository,
+                          UserChangePublisher userChangePublisher,
+                          ApplicationEventPublisher eventPublisher,
+                          @Value("${users.outbox.settle-ms:5000}") long settleMillis,
+                          @Value("${users.outbox.retention-ms:60000}") long retentionMillis,
+                          @Value("${users.outbox.max-lag-ms:2000}") long maxLagMillis) {
+    this.userOutboxRepository = userOutboxRepository;
+    this.userChangePublisher = userChangePublisher;
+    this.eventPublisher = eventPublisher;
+    this.settleMillis = settleMillis;
+    this.retentionMillis = retentionMillis;
+    this.maxLagMillis = maxLagMillis;
+    this.lastSuccessfulPoll = System.currentTimeMillis();
+  }
+
+  @Scheduled(fixedDelayString = "${users.outbox.poll-interval-ms:200}")
+  public synchronized void poll() {
+    long now = System.currentTimeMillis();
+    try {
+      if (!initialized) {
+        // changes made before this instance started cannot be in its caches
+        watermark = userOutboxRepository.findMaxId();
+        highestSeen = watermark;
+        lastPrune = now;
+        initialized = true;
+      }
+      applyNewEvents();
+      advanceWatermark(now);
+      if (now - lastPrune > retentionMillis / 2) {
+        userOutboxRepository.deleteOlderThan(Instant.ofEpochMilli(now - retentionMillis));
+        lastPrune = now;
+      }
+      lastSuccessfulPoll = now;
+      stale = false;
+    }
+    catch (RuntimeException e) {
+      log.warn("Polling the user outbox failed", e);
+      if (now - lastSuccessfulPoll > maxLagMillis) {
+        // keep dropping everything until polling recovers, users cached in between may already be stale
+        if (!stale) {
+          log.warn("User outbox lagging for {} ms, dropping all cached users", now - lastSuccessfulPoll);
+          stale = true;
+        }
+        eventPublisher.publishEvent(UserChangedEvent.all());
+      }
+    }
+  }
+
+  private void applyNewEvents() {
+    long cursor = watermark;
+    List<UserOutboxEvent> page;
+    do {
+      page = userOutboxRepository.findTop500ByIdGreaterThanOrderByIdAsc(cursor);
+      for (UserOutboxEvent event : page) {
+        cursor = event.getId();
+        if (applied.add(event.getId()) && !userChangePublisher.getInstanceId().equals(event.getOrigin())) {
+          eventPublisher.publishEvent(UserChangedEvent.remote(event.getUserId()));
+        }
+      }
+    } while (page.size() == 500);
+    highestSeen = Math.max(highestSeen, cursor);
+  }
+
+  private void advanceWatermark(long now) {
+    pending.addLast(new long[] { now, highestSeen });
+    while (!pending.isEmpty() && pending.peekFirst()[0] <= now - settleMillis) {
+      watermark = Math.max(watermark, pending.pollFirst()[1]);
+    }
+    applied.headSet(watermark, true).clear();
+  }
+}
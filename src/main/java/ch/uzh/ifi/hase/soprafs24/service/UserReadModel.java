@@ -0,0 +1,438 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * User Read Model
+ * A copy of the USER table in a CompactUserTable, so the user listings and
+ * lookups are answered without touching the database. Listings filtered by
+ * status and the birthdays are left to the indexes of the database.
+ * - It is loaded before the application reports ready.
+ * - The UserService reports every mutation, which is applied once its
+ *   transaction committed and before the caches are invalidated.
+ * - Mutations of other instances are read again by id when the
+ *   UserOutboxPoller picks them up.
+ * - Changes made directly in the table (e.g. an import) need a refresh.
+ * Periodically the model is loaded again and compared with the one in use,
+ * the differences found are logged and counted (users.readmodel.differences).
+ * Until the model is loaded, and while it is stale because the outbox cannot
+ * be read, the UserService falls back to the database.
+ */
+@Component
+public class UserReadModel {
+
+  private static final String SELECT_USERS =
+      "select id, username, token, status, creation_date, birthday, version from user order by id";
+
+  private static final String SELECT_USER =
+      "select id, username, token, status, creation_date, birthday, version from user where id = ?";
+
+  private static final UserStatus[] STATUSES = UserStatus.values();
+
+  private final Logger log = LoggerFactory.getLogger(UserReadModel.class);
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final boolean enabled;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // one load at a time
+  private final Lock reloadLock = new ReentrantLock();
+
+  private final Counter differencesFound;
+
+  // guarded by the lock
+  private CompactUserTable table = new CompactUserTable(0);
+
+  // changes applied while the table is being loaded, they are applied to the loaded table again (guarded by the lock)
+  private List<Row> appliedWhileLoading;
+
+  private volatile boolean current;
+
+  private volatile long checks;
+
+  private volatile long lastDifferences;
+
+  public UserReadModel(DataSource dataSource, MeterRegistry meterRegistry,
+                       @Value("${users.readmodel.enabled:true}") boolean enabled,
+                       @Value("${users.readmodel.fetch-size:1000}") int fetchSize) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.jdbcTemplate.setFetchSize(fetchSize);
+    this.enabled = enabled;
+    this.differencesFound = Counter.builder("users.readmodel.differences")
+        .description("Users that differed from the table when the read model was checked")
+        .register(meterRegistry);
+    Gauge.builder("users.readmodel.size", this, UserReadModel::size)
+        .description("Users in the read model")
+        .register(meterRegistry);
+    Gauge.builder("users.readmodel.bytes", this, UserReadModel::footprintBytes)
+        .description("Bytes taken by the read model")
+        .register(meterRegistry);
+  }
+
+  // before the warm up, so it already runs against the loaded model
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    if (enabled) {
+      refresh();
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${users.readmodel.check-interval-ms:300000}",
+      initialDelayString = "${users.readmodel.check-interval-ms:300000}")
+  public void scheduledCheck() {
+    if (enabled) {
+      reload(true);
+    }
+  }
+
+  //true if the reads can be answered by the model
+  public boolean isCurrent() {
+    return current;
+  }
+
+  //loads the model from the table, e.g. after the table was changed directly
+  public void refresh() {
+    reload(false);
+  }
+
+  /**
+   * Loads the model from the table and compares it with the model in use.
+   * Users changed while the table is read may be counted as different.
+   *
+   * @return the number of users that differed, -1 if the model could not be loaded
+   */
+  public long check() {
+    return reload(true);
+  }
+
+  //has to be called inside the transaction that mutated the user, the user is read once it committed
+  public void changed(User user) {
+    if (!enabled) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      apply(Row.of(user));
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      // ahead of the listeners evicting the caches, a reader must not cache the old state after the eviction
+      @Override
+      public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+      }
+
+      // the committed state, including the version incremented by the flush
+      @Override
+      public void afterCommit() {
+        apply(Row.of(user));
+      }
+    });
+  }
+
+  // ahead of the listeners evicting the caches, as above
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  @EventListener
+  public void onUserChanged(UserChangedEvent event) {
+    if (!enabled) {
+      return;
+    }
+    if (event.isAll() && event.isRemote()) {
+      // another instance changed the table directly (e.g. an import)
+      refresh();
+      return;
+    }
+    if (event.isAll()) {
+      // nothing can be proven to be fresh anymore, the next check loads the model again
+      current = false;
+      return;
+    }
+    if (event.isRemote()) {
+      reloadUser(event.getUserId());
+    }
+  }
+
+  public User get(long id) {
+    lock.readLock().lock();
+    try {
+      return table.get(id);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public List<User> getAll() {
+    lock.readLock().lock();
+    try {
+      return table.all();
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  //one page of all users, pages filtered by status are read from the database (see UserService)
+  public List<User> getPage(UserCursor cursor, int limit) {
+    if (UserCursor.SORT_ID.equals(cursor.getSort())) {
+      lock.readLock().lock();
+      try {
+        return table.afterId(cursor.getId(), limit);
+      }
+      finally {
+        lock.readLock().unlock();
+      }
+    }
+    LocalDate creationDate = cursor.isFirstPage() ? null : cursor.getCreationDate();
+    lock.readLock().lock();
+    try {
+      if (table.hasCreationOrder()) {
+        return table.createdAfter(creationDate, cursor.getId(), limit);
+      }
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+    // the order by creation date has to be rebuilt first
+    lock.writeLock().lock();
+    try {
+      return table.createdAfter(creationDate, cursor.getId(), limit);
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return table.size();
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public long footprintBytes() {
+    lock.readLock().lock();
+    try {
+      return table.footprintBytes();
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  //size, footprint and the result of the last check
+  public Map<String, Number> snapshot() {
+    Map<String, Number> snapshot = new TreeMap<>();
+    int users;
+    long bytes;
+    lock.readLock().lock();
+    try {
+      users = table.size();
+      bytes = table.footprintBytes();
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+    snapshot.put("users", users);
+    snapshot.put("bytes", bytes);
+    snapshot.put("bytesPerUser", users == 0 ? 0 : bytes / users);
+    snapshot.put("current", current ? 1 : 0);
+    snapshot.put("checks", checks);
+    snapshot.put("lastDifferences", lastDifferences);
+    return snapshot;
+  }
+
+  // a lock rather than a monitor, a virtual thread holding it while the table is read does not pin its carrier
+  private long reload(boolean compare) {
+    reloadLock.lock();
+    try {
+      return reloadExclusively(compare);
+    }
+    finally {
+      reloadLock.unlock();
+    }
+  }
+
+  // the changes committed in the meantime are applied to both tables, guarded by the reloadLock
+  private long reloadExclusively(boolean compare) {
+    if (!enabled) {
+      return -1;
+    }
+    lock.writeLock().lock();
+    try {
+      appliedWhileLoading = new ArrayList<>();
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+    CompactUserTable loaded;
+    try {
+      loaded = load();
+    }
+    catch (DataAccessException e) {
+      log.warn("Loading the user read model failed, {}", current ? "keeping the current one" : "reads use the database", e);
+      lock.writeLock().lock();
+      try {
+        appliedWhileLoading = null;
+      }
+      finally {
+        lock.writeLock().unlock();
+      }
+      return -1;
+    }
+    long differences;
+    lock.writeLock().lock();
+    try {
+      for (Row row : appliedWhileLoading) {
+        row.applyTo(loaded);
+      }
+      appliedWhileLoading = null;
+      differences = compare && current ? table.differences(loaded) : 0;
+      table = loaded;
+      current = true;
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+    if (compare) {
+      checks++;
+      lastDifferences = differences;
+      differencesFound.increment(differences);
+      if (differences > 0) {
+        log.warn("User read model differed from the table for {} users, replaced it", differences);
+      }
+    }
+    log.info("Loaded {} users into the read model ({} bytes)", loaded.size(), loaded.footprintBytes());
+    return differences;
+  }
+
+  private CompactUserTable load() {
+    Long count = jdbcTemplate.queryForObject("select count(*) from user", Long.class);
+    CompactUserTable loaded = new CompactUserTable((int) Math.min(Integer.MAX_VALUE - 8, (count == null ? 0 : count) * 9 / 8));
+    jdbcTemplate.query(SELECT_USERS, resultSet -> Row.of(resultSet).applyTo(loaded));
+    return loaded;
+  }
+
+  private void reloadUser(Long id) {
+    try {
+      List<Row> rows = jdbcTemplate.query(SELECT_USER, (resultSet, rowNumber) -> Row.of(resultSet), id);
+      apply(rows.isEmpty() ? Row.removed(id) : rows.get(0));
+    }
+    catch (DataAccessException e) {
+      log.warn("Reading user {} for the read model failed, reads use the database until the next check", id, e);
+      current = false;
+    }
+  }
+
+  private void apply(Row row) {
+    lock.writeLock().lock();
+    try {
+      row.applyTo(table);
+      if (appliedWhileLoading != null) {
+        appliedWhileLoading.add(row);
+      }
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // the committed state of one user
+  private static final class Row {
+
+    private final long id;
+
+    private final long version;
+
+    private final UserStatus status;
+
+    private final LocalDate creationDate;
+
+    private final LocalDate birthday;
+
+    private final String username;
+
+    private final String token;
+
+    private final boolean removed;
+
+    private Row(long id, long version, UserStatus status, LocalDate creationDate, LocalDate birthday,
+                String username, String token, boolean removed) {
+      this.id = id;
+      this.version = version;
+      this.status = status;
+      this.creationDate = creationDate;
+      this.birthday = birthday;
+      this.username = username;
+      this.token = token;
+      this.removed = removed;
+    }
+
+    static Row of(User user) {
+      return new Row(user.getId(), user.getVersion() == null ? 0 : user.getVersion(), user.getStatus(),
+          user.getCreationDate(), user.getBirthday(), user.getUsername(), user.getToken(), false);
+    }
+
+    static Row of(ResultSet resultSet) throws SQLException {
+      // the status is stored by its ordinal, see User
+      int ordinal = resultSet.getInt("status");
+      UserStatus status = resultSet.wasNull() ? null : STATUSES[ordinal];
+      return new Row(resultSet.getLong("id"), resultSet.getLong("version"), status,
+          toLocalDate(resultSet.getDate("creation_date")), toLocalDate(resultSet.getDate("birthday")),
+          resultSet.getString("username"), resultSet.getString("token"), false);
+    }
+
+    static Row removed(long id) {
+      return new Row(id, 0, null, null, null, null, null, true);
+    }
+
+    void applyTo(CompactUserTable target) {
+      if (removed) {
+        target.remove(id);
+      }
+      else {
+        target.put(id, version, status, creationDate, birthday, username, token);
+      }
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+      return date == null ? null : date.toLocalDate();
+    }
+  }
+}
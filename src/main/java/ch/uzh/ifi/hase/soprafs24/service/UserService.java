@@ -1,21 +1,32 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.audit.AuditLog;
+import ch.uzh.ifi.hase.soprafs24.constant.AuditEventType;
+import ch.uzh.ifi.hase.soprafs24.constant.DbOperation;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserStatsDTO;
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * User Service
@@ -32,132 +43,343 @@ public class UserService {
 
   private final UserRepository userRepository;
 
+  private final UserCache userCache;
+
+  private final UserChangePublisher userChangePublisher;
+
+  private final UserDbGuard userDbGuard;
+
+  private final AuditLog auditLog;
+
+  private final UserStats userStats;
+
+  private final TokenGenerator tokenGenerator;
+
+  private final UserReadModel userReadModel;
+
+  private final UserGroupCommit userGroupCommit;
+
+  // concurrent lookups of the same user or token share one query
+  private final SingleFlight<Long, Optional<User>> userLookups = new SingleFlight<>();
+
+  private final SingleFlight<String, Boolean> tokenChecks = new SingleFlight<>();
+
   @Autowired
-  public UserService(@Qualifier("userRepository") UserRepository userRepository) {
+  public UserService(@Qualifier("userRepository") UserRepository userRepository, UserCache userCache,
+                     UserChangePublisher userChangePublisher, UserDbGuard userDbGuard,
+                     AuditLog auditLog, UserStats userStats, TokenGenerator tokenGenerator,
+                     UserReadModel userReadModel, UserGroupCommit userGroupCommit) {
     this.userRepository = userRepository;
+    this.userCache = userCache;
+    this.userChangePublisher = userChangePublisher;
+    this.userDbGuard = userDbGuard;
+    this.auditLog = auditLog;
+    this.userStats = userStats;
+    this.tokenGenerator = tokenGenerator;
+    this.userReadModel = userReadModel;
+    this.userGroupCommit = userGroupCommit;
   }
 
+  // the transactions are started by the UserDbGuard after a bulkhead slot was granted,
+  // a transaction of the caller is joined (e.g. the scratch transactions of the UserWarmUp)
+  // the reads are answered by the UserReadModel once it is loaded, the users it returns have no password
+  @Transactional(propagation = Propagation.SUPPORTS)
   public List<User> getUsers() {
-    return this.userRepository.findAll();
+    if (userReadModel.isCurrent()) {
+      return userReadModel.getAll();
+    }
+    return userDbGuard.execute(DbOperation.READ, () -> this.userRepository.findAll());
+  }
+
+  //one page of the users with the given status (all if null) in the order of the cursor, starting right after it
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public List<User> getUsers(UserStatus status, UserCursor cursor, int limit) {
+    // the model has no index on the status, a filtered page is read from the index range of the database
+    if (status == null && userReadModel.isCurrent()) {
+      return userReadModel.getPage(cursor, limit);
+    }
+    Pageable page = PageRequest.of(0, limit);
+    return userDbGuard.execute(DbOperation.READ, () -> {
+      if (UserCursor.SORT_ID.equals(cursor.getSort())) {
+        return status == null
+            ? userRepository.findByIdGreaterThanOrderByIdAsc(cursor.getId(), page)
+            : userRepository.findByStatusAndIdGreaterThanOrderByIdAsc(status, cursor.getId(), page);
+      }
+      if (cursor.isFirstPage()) {
+        return status == null
+            ? userRepository.findAllByOrderByCreationDateAscIdAsc(page)
+            : userRepository.findByStatusOrderByCreationDateAscIdAsc(status, page);
+      }
+      return status == null
+          ? userRepository.findCreatedAfter(cursor.getCreationDate(), cursor.getId(), page)
+          : userRepository.findByStatusCreatedAfter(status, cursor.getCreationDate(), cursor.getId(), page);
+    });
+  }
+
+  //users whose birthday comes up within the given days starting at from, in the order of the birthdays
+  //always read from the index on the day of the year, the model would have to scan every user
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public List<User> getBirthdays(LocalDate from, int days) {
+    BirthdayWindow window = BirthdayWindow.of(from, days);
+    return userDbGuard.execute(DbOperation.READ, () -> {
+      List<User> users = new ArrayList<>();
+      for (int[] range : window.getRanges()) {
+        users.addAll(userRepository.findByBirthdayDayOfYearBetweenOrderByBirthdayDayOfYearAscIdAsc(range[0], range[1]));
+      }
+      return users;
+    });
   }
 
   //service call to create user
+  @Transactional(propagation = Propagation.SUPPORTS)
   public User createUser(User newUser) {
-    newUser.setToken(UUID.randomUUID().toString());
+    // in a group commit the registration may be applied more than once, every time to a fresh copy
+    return write(() -> insertUser(registration(newUser)), () -> insertAlone(newUser));
+  }
+
+  private User insertAlone(User newUser) {
+    // a transaction of the caller is joined and cannot be repeated (e.g. the scratch transactions of the UserWarmUp)
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      return userDbGuard.execute(DbOperation.WRITE, () -> insertUser(newUser));
+    }
+    // retried while another registration of the same name is not committed yet, the retry decides whether it is taken;
+    // a failed attempt leaves its generated id and version behind, so a retry registers a fresh copy
+    User original = registration(newUser);
+    AtomicBoolean retried = new AtomicBoolean();
+    return userDbGuard.executeUpdate(DbOperation.WRITE,
+        () -> insertUser(retried.getAndSet(true) ? registration(original) : newUser));
+  }
+
+  private static User registration(User newUser) {
+    User user = new User();
+    user.setId(newUser.getId());
+    user.setUsername(newUser.getUsername());
+    user.setPassword(newUser.getPassword());
+    user.setBirthday(newUser.getBirthday());
+    return user;
+  }
+
+  // the mutations are merged into group commits if enabled, see UserGroupCommit
+  private <T, E extends Exception> T write(UserUpdateRetryPolicy.Attempt<T, E> mutation,
+                                           UserUpdateRetryPolicy.Attempt<T, E> alone) throws E {
+    return userGroupCommit.isEnabled() ? userGroupCommit.execute(mutation, alone) : alone.run();
+  }
+
+  private User insertUser(User newUser) {
+    newUser.setToken(tokenGenerator.nextToken());
     newUser.setStatus(UserStatus.ONLINE);
     newUser.setCreationDate();
-    checkIfUserExists(newUser);
-    if (newUser.getUsername().length() > 20){
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Username too long");
+    if (UserRules.isUsernameTooLong(newUser.getUsername())){
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, UserRules.USERNAME_TOO_LONG);
       }
     // saves the given entity but data is only persisted in the database once
-    // flush() is called
+    // flush() is called, a taken username is reported by the unique constraint
     newUser = userRepository.save(newUser);
-    userRepository.flush();
+    flushUnique();
+    userChangePublisher.userChanged(newUser.getId());
+    userReadModel.changed(newUser);
+    userStats.registered(newUser.getStatus(), newUser.getCreationDate());
+    auditLog.recordAfterCommit(AuditEventType.REGISTRATION, newUser.getId(), newUser.getUsername(), true);
 
     log.debug("Created Information for User: {}", newUser);
     return newUser;
   }
 
   /**
-   * This is a helper method that will check the uniqueness criteria of the
-   * username and the password
-   * defined in the User entity. The method will do nothing if the input is unique
-   * and throw an error otherwise.
+   * This is a helper method that flushes the pending changes and reports a
+   * violated unique constraint of the User entity (username or token) as a
+   * conflict. Concurrent registrations of the same username are decided by
+   * the database, so no lookup is needed before writing. A write that ran into
+   * an uncommitted change of the same row is thrown as an optimistic lock
+   * failure, so it is retried like any other concurrent update.
+   * In a group commit nothing is flushed here, the group is flushed as a whole.
    *
-   * @param userToBeCreated
    * @throws org.springframework.web.server.ResponseStatusException
-   * @see User
+   * @see UserConstraints
    */
+  private void flushUnique() {
+    if (UserGroupCommit.isApplying()) {
+      return;
+    }
+    try {
+      userRepository.flush();
+    }
+    catch (DataAccessException e) {
+      RuntimeException translated = UserConstraints.translate(e);
+      if (translated != null) {
+        throw translated;
+      }
+      throw e;
+    }
+  }
 
-  //private call needed to check if username is already used before changing a existing or new username
-  private void checkIfUserExists(User userToBeCreated) {
-    User userByUsername = userRepository.findByUsername(userToBeCreated.getUsername());
-
-    if (userByUsername != null) {
-      throw new ResponseStatusException(HttpStatus.CONFLICT, "Username already exists");
+  private void flush() {
+    if (!UserGroupCommit.isApplying()) {
+      userRepository.flush();
     }
   }
 
   //service call to check if password matches the username given returns the logged-in user if successful
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
   public User loginUser(User checkUser) throws ResponseStatusException{
-    User userByUsername = userRepository.findByUsername(checkUser.getUsername());
+    User loggedInUser;
+    try {
+      loggedInUser = userDbGuard.executeUpdate(DbOperation.AUTH, () -> {
+        User userByUsername = userRepository.findByUsername(checkUser.getUsername());
 
-    String baseErrorMessage = "Wrong Username or Password";
-      if (userByUsername != null && userByUsername.getPassword().equals(checkUser.getPassword())) {
-          //login user and set him to be online
-          userByUsername.setStatus(UserStatus.ONLINE);
-          return userByUsername; // Password matches, return the user
-      } else {
-          throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Wrong username or password");
-      }
+        if (userByUsername != null && userByUsername.getPassword().equals(checkUser.getPassword())) {
+            //login user and set him to be online
+            userStats.statusChanged(userByUsername.getStatus(), UserStatus.ONLINE);
+            userByUsername.setStatus(UserStatus.ONLINE);
+            userChangePublisher.userChanged(userByUsername.getId());
+            userReadModel.changed(userByUsername);
+            return userByUsername; // Password matches, return the user
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, UserRules.WRONG_CREDENTIALS);
+        }
+      });
+    }
+    catch (ResponseStatusException e) {
+      auditLog.record(AuditEventType.LOGIN_FAILED, null, checkUser.getUsername(), false);
+      throw e;
+    }
+    auditLog.record(AuditEventType.LOGIN, loggedInUser.getId(), loggedInUser.getUsername(), true);
+    return loggedInUser;
+  }
+
+  //number of users per status and registrations per day, served from counters without querying the database
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public UserStatsDTO getStats() {
+    return userStats.snapshot();
   }
 
   //returns the user for the provided id if user doesn't exist raises 404
+  @Transactional(propagation = Propagation.SUPPORTS)
   public User getUser(Long id) throws ResponseStatusException{
-    Optional<User> optionalUser = userRepository.findById(id);
+    // a user missing in the model may have been created by another instance a moment ago, so the database decides
+    if (userReadModel.isCurrent()) {
+      User modelUser = userReadModel.get(id);
+      if (modelUser != null) {
+        return modelUser;
+      }
+    }
+    User cachedUser = userCache.get(id);
+    if (cachedUser != null) {
+        return cachedUser;
+    }
+    Optional<User> optionalUser = userLookups.execute(id, () -> loadUser(id));
     return optionalUser.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with ID: " + id));
     }
 
-  //service call for changing the user status
+  // only the caller running the query caches the user, the stamp of a waiting caller may be younger than the query
+  private Optional<User> loadUser(Long id) {
+    long stamp = userCache.stamp();
+    Optional<User> optionalUser = userDbGuard.execute(DbOperation.READ, () -> userRepository.findById(id));
+    optionalUser.ifPresent(user -> userCache.putIfUnchanged(user, stamp));
+    return optionalUser;
+  }
+
+  //service call for changing the user status, retried if the user was modified concurrently
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
   public void changeStatus(User user){
-    User userByToken = userRepository.findByToken(user.getToken());
+    UserUpdateRetryPolicy.Attempt<User, RuntimeException> statusChange = () -> {
+      User userByToken = userRepository.findByToken(user.getToken());
       // Update the status attribute
       if (userByToken != null) {
+          userStats.statusChanged(userByToken.getStatus(), user.getStatus());
           userByToken.setStatus(user.getStatus());
           // Save the updated user back to the database
           userRepository.save(userByToken);
-          userRepository.flush();
+          flush();
+          userChangePublisher.userChanged(userByToken.getId());
+          userReadModel.changed(userByToken);
+          return userByToken;
       } else {
           // Handle the case when user is not found
-          throw new ResponseStatusException(HttpStatus.NOT_FOUND,"User could not be found");
+          throw new ResponseStatusException(HttpStatus.NOT_FOUND, UserRules.USER_NOT_FOUND);
       }
+    };
+    User changedUser = write(statusChange, () -> userDbGuard.executeUpdate(DbOperation.WRITE, statusChange));
+    auditLog.record(AuditEventType.STATUS_CHANGE, changedUser.getId(), changedUser.getUsername(), true);
     }
 
-    // service call for changing all changeable properties of the user creationdate, token and id aren't allowed to be changed
+    // service call for changing all changeable properties of the user creationdate, token and id aren't allowed to be changed, retried if the user was modified concurrently
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void changeUser(User user,Long id) throws IllegalAccessException {
-      if(tokenCheck(user,id)){
-          User userByToken = userRepository.findByToken(user.getToken());
-            // Update the status attribute
-            if (userByToken != null) {
-                if (!userByToken.isAttributeSameAs(user, "password") && user.getPassword() != null && !Objects.equals(user.getPassword(), "")) {
-                    userByToken.setPassword(user.getPassword());
-                }
-                if (!userByToken.isAttributeSameAs(user, "username") && user.getUsername() != null && !Objects.equals(user.getUsername(), "")) {
-                    checkIfUserExists(user);
-                    if (user.getUsername().length() > 20){
-                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Username too long");
+      UserUpdateRetryPolicy.Attempt<User, IllegalAccessException> userChange = () -> {
+          if(tokenMatches(user,id)){
+              User userByToken = userRepository.findByToken(user.getToken());
+                // Update the status attribute
+                if (userByToken != null) {
+                    boolean renamed = false;
+                    if (!userByToken.isAttributeSameAs(user, "password") && UserRules.isProvided(user.getPassword())) {
+                        userByToken.setPassword(user.getPassword());
                     }
-                    userByToken.setUsername(user.getUsername());
-                }
-                if (!userByToken.isAttributeSameAs(user, "status") && user.getStatus() != null) {
-                    userByToken.setStatus(user.getStatus());
-                }
-                if (!userByToken.isAttributeSameAs(user, "birthday")) {
-                    userByToken.setBirthday(user.getBirthday());
+                    if (!userByToken.isAttributeSameAs(user, "username") && UserRules.isProvided(user.getUsername())) {
+                        if (UserRules.isUsernameTooLong(user.getUsername())){
+                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, UserRules.USERNAME_TOO_LONG);
+                        }
+                        userByToken.setUsername(user.getUsername());
+                        renamed = true;
+                    }
+                    if (!userByToken.isAttributeSameAs(user, "status") && user.getStatus() != null) {
+                        userStats.statusChanged(userByToken.getStatus(), user.getStatus());
+                        userByToken.setStatus(user.getStatus());
+                    }
+                    if (!userByToken.isAttributeSameAs(user, "birthday")) {
+                        userByToken.setBirthday(user.getBirthday());
+                    }
+                    // Save the updated user back to the database
+                    userRepository.save(userByToken);
+                    // only a rename can violate the unique username, other conflicts stay with the retry policy
+                    if (renamed) {
+                        flushUnique();
+                    } else {
+                        flush();
+                    }
+                    userChangePublisher.userChanged(userByToken.getId());
+                    userReadModel.changed(userByToken);
+                    return userByToken;
+                } else {
+                    // Handle the case when user is not found
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, UserRules.USER_NOT_FOUND);
                 }
-                // Save the updated user back to the database
-                userRepository.save(userByToken);
-                userRepository.flush();
-            } else {
-                // Handle the case when user is not found
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User could not be found");
-            }
-      }else{
-          throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User could not be authenticated");
+          }else{
+              throw new ResponseStatusException(HttpStatus.NOT_FOUND, UserRules.NOT_AUTHENTICATED);
+          }
+      };
+      User changedUser;
+      try {
+        changedUser = write(userChange, () -> userDbGuard.executeUpdate(DbOperation.WRITE, userChange));
       }
+      catch (ResponseStatusException e) {
+        auditLog.record(AuditEventType.PROFILE_CHANGE, id, user.getUsername(), false);
+        throw e;
+      }
+      auditLog.record(AuditEventType.PROFILE_CHANGE, changedUser.getId(), changedUser.getUsername(), true);
     }
 
     //checks if token matches the id and returns boolean value if matches or not
+    @Transactional(propagation = Propagation.SUPPORTS)
     public boolean tokenCheck(User user,Long Id){
+      return tokenChecks.execute(Id + ":" + user.getToken(),
+          () -> userDbGuard.execute(DbOperation.AUTH, () -> tokenMatches(user, Id)));
+    }
+
+    private boolean tokenMatches(User user,Long Id){
       User userByToken = userRepository.findByToken(user.getToken());
       if (userRepository.findById(Id).isPresent()) {
           User userById = userRepository.findById(Id).get();
-          return userByToken != null && userByToken.getPassword().equals(userById.getPassword());
+          return userByToken != null && UserRules.tokenMatches(userByToken.getPassword(), userById.getPassword());
       }
           return false;
     }
 
+    //lookups that were answered by the query of a concurrent caller
+    long getSharedLookups() {
+      return userLookups.getShared() + tokenChecks.getShared();
+    }
+
 }
 
 
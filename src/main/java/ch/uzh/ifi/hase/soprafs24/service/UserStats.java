@@ -0,0 +1,144 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserStatsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * User Stats
+ * Number of users, users per status and registrations per day, kept in striped
+ * counters so that reading them never touches the database. The UserService
+ * reports every registration and status change, the counters are updated once
+ * its transaction committed. Changes made by other instances or directly in
+ * the table (e.g. an import) are picked up by reconciling with the table at
+ * startup and periodically.
+ */
+@Component
+public class UserStats {
+
+  private final Logger log = LoggerFactory.getLogger(UserStats.class);
+
+  private final UserRepository userRepository;
+
+  private final LongAdder total = new LongAdder();
+
+  private final Map<UserStatus, LongAdder> byStatus = new EnumMap<>(UserStatus.class);
+
+  private final ConcurrentMap<LocalDate, LongAdder> registrationsPerDay = new ConcurrentHashMap<>();
+
+  public UserStats(@Qualifier("userRepository") UserRepository userRepository) {
+    this.userRepository = userRepository;
+    for (UserStatus status : UserStatus.values()) {
+      byStatus.put(status, new LongAdder());
+    }
+  }
+
+  public void registered(UserStatus status, LocalDate creationDate) {
+    afterCommit(() -> {
+      total.increment();
+      if (status != null) {
+        counter(status).increment();
+      }
+      registrationsPerDay.computeIfAbsent(creationDate, day -> new LongAdder()).increment();
+    });
+  }
+
+  public void statusChanged(UserStatus from, UserStatus to) {
+    if (from == to) {
+      return;
+    }
+    afterCommit(() -> {
+      if (from != null) {
+        counter(from).decrement();
+      }
+      if (to != null) {
+        counter(to).increment();
+      }
+    });
+  }
+
+  // counts of a rolled back transaction must not be applied, without a transaction they are applied right away
+  private void afterCommit(Runnable update) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      update.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        update.run();
+      }
+    });
+  }
+
+  private LongAdder counter(UserStatus status) {
+    return byStatus.get(status);
+  }
+
+  public UserStatsDTO snapshot() {
+    Map<String, Long> perDay = new TreeMap<>();
+    registrationsPerDay.forEach((day, count) -> {
+      long sum = count.sum();
+      if (sum > 0) {
+        perDay.put(day.toString(), sum);
+      }
+    });
+    return new UserStatsDTO(total.sum(), counter(UserStatus.ONLINE).sum(), counter(UserStatus.OFFLINE).sum(), perDay);
+  }
+
+  /**
+   * Sets the counters to the values of the table. Changes committed while the
+   * table is being counted may be missed or counted twice, the next run
+   * corrects them.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Scheduled(fixedDelayString = "${users.stats.reconcile-interval-ms:60000}",
+      initialDelayString = "${users.stats.reconcile-interval-ms:60000}")
+  public void reconcile() {
+    try {
+      Map<UserStatus, Long> statusCounts = new EnumMap<>(UserStatus.class);
+      for (Object[] row : userRepository.countByStatus()) {
+        statusCounts.put((UserStatus) row[0], (Long) row[1]);
+      }
+      Map<LocalDate, Long> dayCounts = new HashMap<>();
+      for (Object[] row : userRepository.countByCreationDate()) {
+        dayCounts.put((LocalDate) row[0], (Long) row[1]);
+      }
+
+      long newTotal = 0;
+      for (UserStatus status : UserStatus.values()) {
+        long count = statusCounts.getOrDefault(status, 0L);
+        newTotal += count;
+        adjust(counter(status), count);
+      }
+      adjust(total, newTotal);
+      registrationsPerDay.forEach((day, count) -> adjust(count, dayCounts.getOrDefault(day, 0L)));
+      dayCounts.forEach((day, count) -> adjust(registrationsPerDay.computeIfAbsent(day, key -> new LongAdder()), count));
+    }
+    catch (RuntimeException e) {
+      log.warn("Reconciling the user stats failed, keeping the current counts", e);
+    }
+  }
+
+  private static void adjust(LongAdder counter, long value) {
+    counter.add(value - counter.sum());
+  }
+}
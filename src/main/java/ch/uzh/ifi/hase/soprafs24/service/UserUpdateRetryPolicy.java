@@ -0,0 +1,129 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * User Update Retry Policy
+ * Runs a read-modify-write of a user in its own transaction and repeats it when
+ * the optimistic lock (the @Version of the User) detects a concurrent update.
+ * Every attempt starts from a fresh persistence context, so the changes are
+ * re-applied to the latest committed state. Once the maximum number of attempts
+ * is reached the caller gets a 409.
+ */
+@Component
+public class UserUpdateRetryPolicy {
+
+  private final Logger log = LoggerFactory.getLogger(UserUpdateRetryPolicy.class);
+
+  private final PlatformTransactionManager transactionManager;
+
+  private final int maxAttempts;
+
+  private final long backoffMillis;
+
+  private final LongAdder attempts = new LongAdder();
+
+  private final LongAdder retries = new LongAdder();
+
+  private final LongAdder conflicts = new LongAdder();
+
+  public UserUpdateRetryPolicy(PlatformTransactionManager transactionManager,
+                               @Value("${users.update.max-attempts:5}") int maxAttempts,
+                               @Value("${users.update.backoff-ms:2}") long backoffMillis) {
+    this.transactionManager = transactionManager;
+    this.maxAttempts = maxAttempts;
+    this.backoffMillis = backoffMillis;
+  }
+
+  /**
+   * A single attempt of a user update, it may throw the checked exceptions of
+   * the update itself (e.g. IllegalAccessException of User.isAttributeSameAs)
+   */
+  @FunctionalInterface
+  public interface Attempt<T, E extends Exception> {
+    T run() throws E;
+  }
+
+  public <T, E extends Exception> T execute(Attempt<T, E> attempt) throws E {
+    return execute(TransactionDefinition.TIMEOUT_DEFAULT, attempt);
+  }
+
+  //the timeout applies to every attempt, Hibernate passes the remaining time on as query timeout of each statement
+  public <T, E extends Exception> T execute(int timeoutSeconds, Attempt<T, E> attempt) throws E {
+    DefaultTransactionDefinition definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    definition.setTimeout(timeoutSeconds);
+    for (int attemptNumber = 1; ; attemptNumber++) {
+      attempts.increment();
+      try {
+        return inTransaction(definition, attempt);
+      }
+      catch (OptimisticLockingFailureException e) {
+        if (attemptNumber >= maxAttempts) {
+          conflicts.increment();
+          log.debug("Giving up user update after {} attempts", attemptNumber);
+          throw new ResponseStatusException(HttpStatus.CONFLICT, "User was modified concurrently, please retry", e);
+        }
+        retries.increment();
+        backoff(attemptNumber);
+      }
+    }
+  }
+
+  private <T, E extends Exception> T inTransaction(TransactionDefinition definition, Attempt<T, E> attempt) throws E {
+    TransactionStatus status = transactionManager.getTransaction(definition);
+    T result;
+    boolean completed = false;
+    try {
+      result = attempt.run();
+      completed = true;
+    }
+    finally {
+      if (!completed) {
+        transactionManager.rollback(status);
+      }
+    }
+    // an optimistic lock failure can also surface on commit, the transaction is rolled back in that case
+    transactionManager.commit(status);
+    return result;
+  }
+
+  //randomized exponential backoff so that the competing writers do not collide again right away
+  private void backoff(int attemptNumber) {
+    long maxDelay = backoffMillis << Math.min(attemptNumber - 1, 6);
+    if (maxDelay <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelay + 1));
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while updating user", e);
+    }
+  }
+
+  public long getAttempts() {
+    return attempts.sum();
+  }
+
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  public long getConflicts() {
+    return conflicts.sum();
+  }
+}
@@ -0,0 +1,202 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.cache.UserJsonCache;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * User Warm Up
+ * Runs before the application reports ready: Spring Boot only switches the
+ * readiness state (/actuator/health/readiness) to ACCEPTING_TRAFFIC once the
+ * listeners of the ApplicationReadyEvent returned, "/" answers as liveness
+ * all along.
+ * The warm up
+ * - opens the connections of the pool,
+ * - runs the UserService and UserJsonCache paths with a synthetic user for a
+ *   number of iterations, so the JIT compiled them and Hibernate has the query
+ *   plans. The user is registered from a JSON request body the way the
+ *   UserController does it (Jackson, DTOMapper) and answered as JSON. Every
+ *   iteration runs in a scratch transaction that is rolled back, nothing of it
+ *   is committed, published or audited,
+ * - loads the first users into the UserCache and the UserJsonCache.
+ */
+@Component
+public class UserWarmUp {
+
+  private static final String USERNAME_PREFIX = "warmup-";
+
+  private final Logger log = LoggerFactory.getLogger(UserWarmUp.class);
+
+  private final UserService userService;
+
+  private final UserRepository userRepository;
+
+  private final UserCache userCache;
+
+  private final UserJsonCache userJsonCache;
+
+  private final DataSource dataSource;
+
+  private final ObjectMapper objectMapper;
+
+  private final TransactionTemplate scratchTransaction;
+
+  private final boolean enabled;
+
+  private final int iterations;
+
+  private final int connections;
+
+  private final int preloadUsers;
+
+  private volatile int completedIterations;
+
+  public UserWarmUp(UserService userService, @Qualifier("userRepository") UserRepository userRepository,
+                    UserCache userCache, UserJsonCache userJsonCache, DataSource dataSource,
+                    ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                    @Value("${users.warmup.enabled:true}") boolean enabled,
+                    @Value("${users.warmup.iterations:100}") int iterations,
+                    @Value("${users.warmup.connections:10}") int connections,
+                    @Value("${users.warmup.preload-users:1000}") int preloadUsers) {
+    this.userService = userService;
+    this.userRepository = userRepository;
+    this.userCache = userCache;
+    this.userJsonCache = userJsonCache;
+    this.dataSource = dataSource;
+    this.objectMapper = objectMapper;
+    this.scratchTransaction = new TransactionTemplate(transactionManager);
+    this.enabled = enabled;
+    this.iterations = iterations;
+    this.connections = connections;
+    this.preloadUsers = preloadUsers;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    if (enabled) {
+      warmUp();
+    }
+  }
+
+  //a failing step is logged and skipped, the application becomes ready in any case
+  public void warmUp() {
+    long start = System.currentTimeMillis();
+    try {
+      openConnections();
+      runIterations();
+    }
+    catch (RuntimeException | SQLException e) {
+      log.warn("Warm up stopped after {} iterations", completedIterations, e);
+    }
+    // drops whatever the synthetic user left in the caches
+    userCache.clear();
+    userJsonCache.clear();
+    try {
+      preloadCaches();
+    }
+    catch (RuntimeException e) {
+      log.warn("Preloading the user caches failed", e);
+    }
+    log.info("Warm up finished within {} ms ({} iterations, {} users cached)",
+        System.currentTimeMillis() - start, completedIterations, userCache.size());
+  }
+
+  // holds the connections at the same time, so the pool has to open all of them
+  private void openConnections() throws SQLException {
+    List<Connection> opened = new ArrayList<>();
+    try {
+      for (int i = 0; i < connections; i++) {
+        Connection connection = dataSource.getConnection();
+        opened.add(connection);
+        connection.isValid(1);
+      }
+    }
+    finally {
+      for (Connection connection : opened) {
+        connection.close();
+      }
+    }
+  }
+
+  private void runIterations() {
+    String run = UUID.randomUUID().toString().substring(0, 8);
+    for (int i = 0; i < iterations; i++) {
+      String username = USERNAME_PREFIX + run + "-" + i;
+      scratchTransaction.executeWithoutResult(status -> {
+        status.setRollbackOnly();
+        syntheticCalls(username);
+      });
+      completedIterations = i + 1;
+    }
+  }
+
+  private void syntheticCalls(String username) {
+    User user;
+    try {
+      // POST /users and POST /checkUser/{id} as handled by the UserController
+      UserPostDTO registration = objectMapper.readValue("{\"username\":\"" + username
+          + "\",\"password\":\"warmup\",\"birthday\":\"2000-01-01\"}", UserPostDTO.class);
+      user = userService.createUser(DTOMapper.INSTANCE.convertUserPostDTOtoEntity(registration));
+      objectMapper.writeValueAsBytes(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+      UserPostDTO tokenCheck = objectMapper.readValue("{\"token\":\"" + user.getToken() + "\"}", UserPostDTO.class);
+      objectMapper.writeValueAsBytes(userService.tokenCheck(DTOMapper.INSTANCE.convertUserPostDTOtoEntity(tokenCheck), user.getId()));
+    }
+    catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+    userJsonCache.encode(userService.getUser(user.getId()), userJsonCache.stamp());
+
+    long stamp = userJsonCache.stamp();
+    userJsonCache.encodeAll(userService.getUsers(null, UserCursor.parse(null, null), 10), stamp);
+    userJsonCache.encodeAll(userService.getUsers(UserStatus.ONLINE, UserCursor.parse(UserCursor.SORT_CREATION_DATE, null), 10), stamp);
+    userService.getUsers(UserStatus.ONLINE, UserCursor.parse(UserCursor.SORT_CREATION_DATE,
+        UserCursor.encode(UserCursor.SORT_CREATION_DATE, user)), 10);
+    userService.getBirthdays(LocalDate.now(), 7);
+
+    // login, status and profile changes commit in transactions of their own, their queries and updates are run here
+    User managed = userRepository.findByUsername(username);
+    userRepository.findByToken(managed.getToken());
+    managed.setStatus(UserStatus.OFFLINE);
+    managed.setBirthday(LocalDate.of(2000, 2, 29));
+    userRepository.flush();
+  }
+
+  private void preloadCaches() {
+    if (preloadUsers <= 0) {
+      return;
+    }
+    long stamp = userCache.stamp();
+    long jsonStamp = userJsonCache.stamp();
+    for (User user : userService.getUsers(null, UserCursor.parse(null, null), preloadUsers)) {
+      userCache.putIfUnchanged(user, stamp);
+      userJsonCache.encode(user, jsonStamp);
+    }
+  }
+
+  public int getCompletedIterations() {
+    return completedIterations;
+  }
+}
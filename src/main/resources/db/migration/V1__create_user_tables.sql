@@ -0,0 +1,27 @@
+-- USER and USER_OUTBOX as mapped by User and UserOutboxEvent, ids come from hibernate_sequence
+create sequence hibernate_sequence start with 1 increment by 1;
+
+create table user (
+  id bigint not null,
+  birthday date,
+  birthday_day_of_year integer,
+  creation_date date not null,
+  password varchar(255) not null,
+  status integer not null,
+  token varchar(255) not null,
+  username varchar(255) not null,
+  version bigint,
+  primary key (id)
+);
+
+-- registration and rename conflicts are decided by these constraints, see UserConstraints
+alter table user add constraint UK_USER_USERNAME unique (username);
+alter table user add constraint UK_USER_TOKEN unique (token);
+
+create table user_outbox (
+  id bigint not null,
+  created_at timestamp not null,
+  origin varchar(255) not null,
+  user_id bigint not null,
+  primary key (id)
+);
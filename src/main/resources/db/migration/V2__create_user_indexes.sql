@@ -0,0 +1,7 @@
+-- keyset pages of GET /users filtered by status and/or sorted by creation date
+create index IDX_USER_STATUS_ID on user (status, id);
+create index IDX_USER_CREATION_DATE_ID on user (creation_date, id);
+create index IDX_USER_STATUS_CREATION_DATE_ID on user (status, creation_date, id);
+
+-- upcoming birthdays as a range of the day of a leap year, see BirthdayWindow
+create index IDX_USER_BIRTHDAY_DAY_ID on user (birthday_day_of_year, id);
@@ -0,0 +1,2 @@
+-- an outbox row without a user id marks all users as changed, e.g. after an import
+alter table user_outbox alter column user_id set null;
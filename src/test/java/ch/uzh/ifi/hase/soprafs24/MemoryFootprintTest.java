@@ -0,0 +1,256 @@
+package ch.uzh.ifi.hase.soprafs24;
+
+import ch.uzh.ifi.hase.soprafs24.load.HttpLoadDriver;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Memory footprint of the lowmem profile. The application jar is started by
+ * launch.sh in a process of its own, so the JVM flags and the profile are the
+ * deployed ones. RSS (from ps) and the committed heap (from
+ * /actuator/metrics) are sampled once the application is ready and idle, and
+ * then while a mix of registrations, logins and reads keeps requests in
+ * flight. Before the load the table is filled with IMPORTED_USERS users
+ * through the admin import, so whatever grows with the number of users shows
+ * up in the samples. Both must stay within the budgets of
+ * memory-budgets.properties.
+ * Run with ./gradlew footprint (part of ./gradlew build), it needs the bootJar.
+ */
+@Tag("footprint")
+public class MemoryFootprintTest {
+
+  private static final int USERS = 200;
+
+  // a realistic table, the registered USERS are the ones the load logs in and reads
+  private static final int IMPORTED_USERS = 100_000;
+
+  private static final String ADMIN_TOKEN = "footprint";
+
+  private static final int CONCURRENCY = 64;
+
+  private static final Duration LOAD = Duration.ofSeconds(20);
+
+  private static final long SAMPLE_INTERVAL_MILLIS = 200;
+
+  private static final Properties BUDGETS = new Properties();
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  private Process application;
+
+  private int port;
+
+  @BeforeAll
+  public static void loadBudgets() throws IOException {
+    try (InputStream in = MemoryFootprintTest.class.getResourceAsStream("/memory-budgets.properties")) {
+      BUDGETS.load(in);
+    }
+  }
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    if (application != null) {
+      application.destroy();
+      if (!application.waitFor(30, TimeUnit.SECONDS)) {
+        application.destroyForcibly();
+      }
+    }
+  }
+
+  @Test
+  public void lowmem_withinBudgets() throws Exception {
+    start();
+    // lets the start up settle, e.g. the warm up's garbage
+    Thread.sleep(5000);
+    Sample idle = sample();
+
+    importUsers();
+    List<JsonNode> users = new ArrayList<>();
+    for (int i = 0; i < USERS; i++) {
+      users.add(objectMapper.readTree(send(post("/users", "{\"username\":\"footprint" + i + "\",\"password\":\"password\"}"))));
+    }
+    AtomicInteger registrations = new AtomicInteger();
+    Sample peak = new Sample(0, 0);
+    AtomicReference<Throwable> samplingFailure = new AtomicReference<>();
+    Thread sampler = new Thread(() -> {
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          peak.max(sample());
+          Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      catch (IOException | RuntimeException | AssertionError e) {
+        // a peak missed would pass the budgets
+        samplingFailure.set(e);
+      }
+    }, "footprint-sampler");
+    sampler.start();
+    HttpLoadDriver driver = new HttpLoadDriver();
+    HttpLoadDriver.Result result;
+    try {
+      result = driver.run("lowmem", CONCURRENCY, LOAD, () -> {
+        JsonNode user = users.get(ThreadLocalRandom.current().nextInt(USERS));
+        switch (ThreadLocalRandom.current().nextInt(4)) {
+          case 0:
+            return post("/users", "{\"username\":\"load" + registrations.incrementAndGet() + "\",\"password\":\"password\"}");
+          case 1:
+            return post("/checkUser/" + user.get("id").asLong(), "{\"token\":\"" + user.get("token").asText() + "\"}");
+          case 2:
+            // a page, the registrations keep growing the full list
+            return get("/users?limit=50");
+          default:
+            return get("/users/" + user.get("id").asLong());
+        }
+      });
+    }
+    finally {
+      driver.close();
+      sampler.interrupt();
+      sampler.join();
+    }
+    if (samplingFailure.get() != null) {
+      fail("sampling under load failed", samplingFailure.get());
+    }
+    peak.max(sample());
+
+    System.out.printf("%6s %10s %10s%n", "", "rss MB", "heap MB");
+    System.out.printf("%6s %10d %10d%n", "idle", idle.rssMb, idle.heapMb);
+    System.out.printf("%6s %10d %10d%n", "load", peak.rssMb, peak.heapMb);
+    assertEquals(0, result.getErrors(), "requests failed under load");
+    assertWithin("idle.rss", idle.rssMb);
+    assertWithin("idle.heap", idle.heapMb);
+    assertWithin("load.rss", peak.rssMb);
+    assertWithin("load.heap", peak.heapMb);
+  }
+
+  private void start() throws IOException, InterruptedException {
+    Path directory = Path.of(System.getProperty("footprint.dir", "build/footprint"));
+    Files.createDirectories(directory);
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    ProcessBuilder builder = new ProcessBuilder("sh", System.getProperty("footprint.launch", "launch.sh"),
+        "--server.port=" + port,
+        "--users.admin.token=" + ADMIN_TOKEN,
+        "--users.audit.directory=" + directory.resolve("audit").toAbsolutePath(),
+        "--users.tracing.directory=" + directory.resolve("traces").toAbsolutePath())
+        .redirectErrorStream(true)
+        .redirectOutput(directory.resolve("application.log").toFile());
+    builder.environment().put("JAR", System.getProperty("footprint.jar", "build/libs/soprafs24.jar"));
+    builder.environment().remove("SPRING_PROFILES_ACTIVE");
+    application = builder.start();
+
+    long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(2);
+    while (!isReady()) {
+      assertTrue(application.isAlive(), "the application exited, see " + directory.resolve("application.log"));
+      assertTrue(System.currentTimeMillis() < deadline, "the application did not get ready within 2 minutes");
+      Thread.sleep(500);
+    }
+  }
+
+  // ids far above the registered ones, the import advances the id sequence past them
+  private void importUsers() throws IOException, InterruptedException {
+    StringBuilder ndjson = new StringBuilder();
+    for (int i = 0; i < IMPORTED_USERS; i++) {
+      long id = 1_000_000L + i;
+      ndjson.append("{\"id\":").append(id).append(",\"username\":\"imported").append(id)
+          .append("\",\"password\":\"password\",\"token\":\"").append(UUID.randomUUID())
+          .append("\",\"status\":\"OFFLINE\",\"creationDate\":\"2024-01-01\",\"version\":0}\n");
+    }
+    HttpRequest request = HttpRequest.newBuilder(HttpLoadDriver.uri(port, "/admin/users/import"))
+        .header("Content-Type", "application/x-ndjson")
+        .header("X-Admin-Token", ADMIN_TOKEN)
+        .POST(HttpRequest.BodyPublishers.ofString(ndjson.toString()))
+        .build();
+    JsonNode result = objectMapper.readTree(send(request));
+    assertEquals(IMPORTED_USERS, result.get("rows").asInt());
+  }
+
+  private boolean isReady() throws InterruptedException {
+    try {
+      return client.send(get("/actuator/health/readiness"), HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    }
+    catch (IOException e) {
+      // not listening yet
+      return false;
+    }
+  }
+
+  private Sample sample() throws IOException, InterruptedException {
+    Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", Long.toString(application.pid())).start();
+    String rssKb = new String(ps.getInputStream().readAllBytes(), StandardCharsets.US_ASCII).trim();
+    ps.waitFor();
+    JsonNode heap = objectMapper.readTree(send(get("/actuator/metrics/jvm.memory.committed?tag=area:heap")));
+    long heapBytes = (long) heap.get("measurements").get(0).get("value").asDouble();
+    return new Sample(Long.parseLong(rssKb) / 1024, heapBytes / (1024 * 1024));
+  }
+
+  private String send(HttpRequest request) throws IOException, InterruptedException {
+    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    assertTrue(response.statusCode() < 400, request.uri() + " answered " + response.statusCode());
+    return response.body();
+  }
+
+  private HttpRequest get(String path) {
+    return HttpRequest.newBuilder(HttpLoadDriver.uri(port, path)).GET().build();
+  }
+
+  private HttpRequest post(String path, String body) {
+    return HttpRequest.newBuilder(HttpLoadDriver.uri(port, path))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build();
+  }
+
+  private static void assertWithin(String budget, long megabytes) {
+    long limit = Long.parseLong(BUDGETS.getProperty(budget));
+    assertTrue(megabytes <= limit, budget + " " + megabytes + " MB exceeds the budget of " + limit + " MB");
+  }
+
+  private static final class Sample {
+
+    private long rssMb;
+
+    private long heapMb;
+
+    private Sample(long rssMb, long heapMb) {
+      this.rssMb = rssMb;
+      this.heapMb = heapMb;
+    }
+
+    private synchronized void max(Sample other) {
+      rssMb = Math.max(rssMb, other.rssMb);
+      heapMb = Math.max(heapMb, other.heapMb);
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package ch.uzh.ifi.hase.soprafs24;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The virtual profile: requests run on virtual threads, and concurrent
+ * registrations, logins and status changes (with group commit) do not pin
+ * their carrier thread in the application's code. Pinning is taken from the
+ * jdk.VirtualThreadPinned events of JFR: an event counts against the
+ * application if any frame of the pinned stack holds a monitor in its code (a
+ * synchronized method or block), also when the blocking call itself is made
+ * further in, e.g. by H2 or Hikari. All pinned stacks are printed.
+ * Only runs in the virtualThreads mode: ./gradlew test -PvirtualThreads
+ */
+@EnabledIfSystemProperty(named = "spring.profiles.include", matches = ".*virtual.*")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = { "users.groupcommit.enabled=true", "users.db.bulkhead-wait-ms=5000" })
+public class VirtualThreadIntegrationTest {
+
+  private static final String PACKAGE = "ch.uzh.ifi.hase.soprafs24.";
+
+  private static final int CALLERS = 64;
+
+  private static final AtomicInteger VIRTUAL_REQUESTS = new AtomicInteger();
+
+  private static final AtomicInteger PLATFORM_REQUESTS = new AtomicInteger();
+
+  @LocalServerPort
+  private int port;
+
+  @TempDir
+  Path tempDir;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  @TestConfiguration
+  static class RequestThreads {
+
+    @Bean
+    public Filter requestThreadFilter() {
+      return new OncePerRequestFilter() {
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+          (VirtualThreads.isVirtual(Thread.currentThread()) ? VIRTUAL_REQUESTS : PLATFORM_REQUESTS).incrementAndGet();
+          chain.doFilter(request, response);
+        }
+      };
+    }
+  }
+
+  @Test
+  public void requests_runOnVirtualThreads() throws Exception {
+    int platformBefore = PLATFORM_REQUESTS.get();
+
+    assertEquals(200, client.send(get("/users"), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+    assertTrue(VIRTUAL_REQUESTS.get() > 0);
+    assertEquals(platformBefore, PLATFORM_REQUESTS.get());
+  }
+
+  @Test
+  public void concurrentWrites_noPinningInApplicationCode() throws Exception {
+    List<RecordedEvent> pinned;
+    try (Recording recording = new Recording()) {
+      recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+      recording.start();
+      runCallers();
+      recording.stop();
+      Path file = tempDir.resolve("pinned.jfr");
+      recording.dump(file);
+      pinned = RecordingFile.readAllEvents(file);
+    }
+
+    List<String> inApplication = new ArrayList<>();
+    for (RecordedEvent event : pinned) {
+      String stack = stack(event);
+      System.out.println("pinned for " + event.getDuration().toNanos() / 1000 + " us\n" + stack);
+      if (blockedInApplication(event)) {
+        inApplication.add(stack);
+      }
+    }
+    assertTrue(inApplication.isEmpty(), "pinned in the application:\n" + String.join("\n", inApplication));
+  }
+
+  // every caller registers, logs in and goes offline
+  private void runCallers() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    try {
+      List<Future<?>> calls = new ArrayList<>();
+      for (int i = 0; i < CALLERS; i++) {
+        String username = "virtual" + i;
+        calls.add(executor.submit(() -> {
+          JsonNode user = objectMapper.readTree(send(post("/users", "{\"username\":\"" + username + "\",\"password\":\"password\"}")));
+          send(post("/checkUser", "{\"username\":\"" + username + "\",\"password\":\"password\"}"));
+          send(HttpRequest.newBuilder(uri("/status"))
+              .header("Content-Type", "application/json")
+              .PUT(HttpRequest.BodyPublishers.ofString("{\"token\":\"" + user.get("token").asText() + "\",\"status\":\"OFFLINE\"}"))
+              .build());
+          return null;
+        }));
+      }
+      for (Future<?> call : calls) {
+        call.get();
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // the monitor pinning the carrier may be held by any frame, not only by the one that blocked
+  private static boolean blockedInApplication(RecordedEvent event) {
+    if (event.getStackTrace() == null) {
+      return false;
+    }
+    for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+      RecordedMethod method = frame.getMethod();
+      if (method.getType().getName().startsWith(PACKAGE) && holdsMonitor(method)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean holdsMonitor(RecordedMethod method) {
+    return Modifier.isSynchronized(method.getModifiers())
+        || hasSynchronizedBlock(method.getType().getName(), method.getName(), method.getDescriptor());
+  }
+
+  // JFR only records the modifiers, a synchronized block is found in the bytecode (generated classes have none)
+  private static boolean hasSynchronizedBlock(String type, String name, String descriptor) {
+    try (InputStream in = VirtualThreadIntegrationTest.class.getResourceAsStream("/" + type.replace('.', '/') + ".class")) {
+      if (in == null) {
+        return false;
+      }
+      boolean[] found = { false };
+      new ClassReader(in).accept(new ClassVisitor(SpringAsmInfo.ASM_VERSION) {
+        @Override
+        public MethodVisitor visitMethod(int access, String methodName, String methodDescriptor, String signature,
+                                         String[] exceptions) {
+          if (!methodName.equals(name) || !methodDescriptor.equals(descriptor)) {
+            return null;
+          }
+          return new MethodVisitor(SpringAsmInfo.ASM_VERSION) {
+            @Override
+            public void visitInsn(int opcode) {
+              found[0] |= opcode == Opcodes.MONITORENTER;
+            }
+          };
+        }
+      }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      return found[0];
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String stack(RecordedEvent event) {
+    StringBuilder stack = new StringBuilder();
+    if (event.getStackTrace() != null) {
+      for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+        stack.append("  at ").append(frame.getMethod().getType().getName()).append('.')
+            .append(frame.getMethod().getName()).append(':').append(frame.getLineNumber()).append('\n');
+      }
+    }
+    return stack.toString();
+  }
+
+  private String send(HttpRequest request) throws Exception {
+    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    assertTrue(response.statusCode() < 400, request.uri() + " answered " + response.statusCode());
+    return response.body();
+  }
+
+  private HttpRequest get(String path) {
+    return HttpRequest.newBuilder(uri(path)).GET().build();
+  }
+
+  private HttpRequest post(String path, String body) {
+    return HttpRequest.newBuilder(uri(path))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build();
+  }
+
+  private URI uri(String path) {
+    return URI.create("http://localhost:" + port + path);
+  }
+}
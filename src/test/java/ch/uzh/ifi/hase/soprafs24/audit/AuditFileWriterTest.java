@@ -0,0 +1,41 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuditFileWriterTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void write_exceedsMaxFileSize_rollsAndKeepsMaxFiles() throws Exception {
+    byte[] line = "0123456789\n".getBytes(StandardCharsets.UTF_8);
+    try (AuditFileWriter writer = new AuditFileWriter(directory, 3 * line.length, 2, FsyncPolicy.BATCH, 0)) {
+      for (int i = 0; i < 20; i++) {
+        writer.write(ByteBuffer.wrap(line));
+        writer.endOfBatch();
+        // rolled files are named by millisecond
+        Thread.sleep(2);
+      }
+    }
+
+    int rolledFiles = 0;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "audit-*.log")) {
+      for (Path path : stream) {
+        assertEquals(3 * line.length, Files.size(path));
+        rolledFiles++;
+      }
+    }
+    assertEquals(2, rolledFiles);
+    assertEquals(2 * line.length, Files.size(directory.resolve(AuditFileWriter.ACTIVE_FILE)));
+  }
+}
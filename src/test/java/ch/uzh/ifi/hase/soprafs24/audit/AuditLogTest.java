@@ -0,0 +1,62 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AuditEventType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuditLogTest {
+
+  private static final long FSYNC_INTERVAL_MILLIS = 500;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void record_idleAfterLastEntry_forcedOnceIntervalIsOver() throws Exception {
+    AuditLog auditLog = new AuditLog(true, 64, directory.toString(), 1024 * 1024, 2,
+        FsyncPolicy.INTERVAL, FSYNC_INTERVAL_MILLIS, 16);
+    auditLog.start();
+    try {
+      // the first entry is forced right away and starts the interval
+      auditLog.record(AuditEventType.REGISTRATION, 1L, "first", true);
+      assertTrue(await(() -> auditLog.getFsyncs() == 1));
+
+      // the second one is written within the interval and nothing follows it
+      auditLog.record(AuditEventType.LOGIN, 1L, "second", true);
+      assertTrue(await(() -> activeFile().contains("\"second\"")));
+      assertEquals(1, auditLog.getFsyncs());
+
+      assertTrue(await(() -> auditLog.getFsyncs() == 2));
+    }
+    finally {
+      auditLog.stop();
+    }
+  }
+
+  private String activeFile() {
+    try {
+      return new String(Files.readAllBytes(directory.resolve(AuditFileWriter.ACTIVE_FILE)), StandardCharsets.UTF_8);
+    }
+    catch (Exception e) {
+      return "";
+    }
+  }
+
+  private static boolean await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 4 * FSYNC_INTERVAL_MILLIS;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) {
+        return false;
+      }
+      Thread.sleep(5);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,76 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import ch.uzh.ifi.hase.soprafs24.constant.AuditEventType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuditRingBufferTest {
+
+  @Test
+  public void drain_returnsEntriesInPublishOrder() {
+    AuditRingBuffer ringBuffer = new AuditRingBuffer(8);
+    ringBuffer.tryPublish(AuditEventType.REGISTRATION, 1L, "first", true);
+    ringBuffer.tryPublish(AuditEventType.LOGIN, 2L, "second", true);
+
+    List<String> usernames = new ArrayList<>();
+    int drained = ringBuffer.drain(entry -> usernames.add(entry.username), 10);
+
+    assertEquals(2, drained);
+    assertEquals(List.of("first", "second"), usernames);
+    assertEquals(0, ringBuffer.drain(entry -> fail("nothing left to drain"), 10));
+  }
+
+  @Test
+  public void tryPublish_full_dropsWithoutBlocking() {
+    AuditRingBuffer ringBuffer = new AuditRingBuffer(4);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ringBuffer.tryPublish(AuditEventType.LOGIN, (long) i, "user", true));
+    }
+
+    assertFalse(ringBuffer.tryPublish(AuditEventType.LOGIN, 4L, "user", true));
+    assertEquals(1, ringBuffer.getDropped());
+
+    // draining frees the slots again
+    assertEquals(4, ringBuffer.drain(entry -> { }, 10));
+    assertTrue(ringBuffer.tryPublish(AuditEventType.LOGIN, 5L, "user", true));
+  }
+
+  @Test
+  public void concurrentProducers_everyEventIsDrainedOrDropped() throws Exception {
+    int producers = 4;
+    int eventsPerProducer = 50_000;
+    AuditRingBuffer ringBuffer = new AuditRingBuffer(1024);
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    for (int p = 0; p < producers; p++) {
+      long producer = p;
+      executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < eventsPerProducer; i++) {
+          ringBuffer.tryPublish(AuditEventType.STATUS_CHANGE, producer, null, true);
+        }
+        return null;
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+
+    // drain concurrently like the consumer thread does
+    long drained = 0;
+    while (!executor.isTerminated()) {
+      drained += ringBuffer.drain(entry -> { }, 256);
+    }
+    drained += ringBuffer.drain(entry -> { }, Integer.MAX_VALUE);
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals((long) producers * eventsPerProducer, drained + ringBuffer.getDropped());
+  }
+}
@@ -0,0 +1,97 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Allocation Recorder
+ * Measures the bytes allocated by the current thread (exact, from the
+ * ThreadMXBean) and samples the allocation sites with JFR while it is open, so
+ * the frames that allocate the most can be reported.
+ */
+class AllocationRecorder implements AutoCloseable {
+
+  private static final String APPLICATION_PACKAGE = "ch.uzh.ifi.hase.soprafs24.";
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final long threadId = Thread.currentThread().getId();
+
+  private final Recording recording = new Recording();
+
+  private final long startBytes;
+
+  AllocationRecorder() {
+    recording.enable("jdk.ObjectAllocationSample").with("throttle", "10000/s").withStackTrace();
+    recording.start();
+    startBytes = allocatedBytes();
+  }
+
+  long allocatedBytes() {
+    return THREADS.getThreadAllocatedBytes(threadId) - startBytes;
+  }
+
+  /**
+   * Stops the recording and returns the sampled allocation sites of the
+   * measured thread with the largest estimated allocation, formatted as
+   * "allocating frame <- first application frame: bytes".
+   */
+  List<String> topFrames(int limit) throws IOException {
+    recording.stop();
+    Path file = Files.createTempFile("allocations", ".jfr");
+    try {
+      recording.dump(file);
+      Map<String, Long> bytesByFrame = new HashMap<>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+        if (!"jdk.ObjectAllocationSample".equals(event.getEventType().getName())
+            || event.getThread() == null || event.getThread().getJavaThreadId() != threadId
+            || event.getStackTrace() == null) {
+          continue;
+        }
+        bytesByFrame.merge(describe(event.getStackTrace().getFrames()), event.getLong("weight"), Long::sum);
+      }
+      return bytesByFrame.entrySet().stream()
+          .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+          .limit(limit)
+          .map(entry -> entry.getKey() + ": " + entry.getValue() + " bytes")
+          .collect(Collectors.toList());
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Override
+  public void close() {
+    recording.close();
+  }
+
+  private static String describe(List<RecordedFrame> frames) {
+    if (frames.isEmpty()) {
+      return "<unknown>";
+    }
+    String site = describe(frames.get(0));
+    for (RecordedFrame frame : frames) {
+      if (frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE)) {
+        return site + " <- " + describe(frame);
+      }
+    }
+    return site;
+  }
+
+  private static String describe(RecordedFrame frame) {
+    return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+  }
+}
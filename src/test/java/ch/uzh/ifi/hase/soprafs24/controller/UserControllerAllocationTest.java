@@ -0,0 +1,163 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.UserReadModel;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Allocation budget test for every UserController endpoint.
+ * Each endpoint is called in-process through the whole stack (real service and
+ * database), first to warm up and then measured with the allocation counter of
+ * the request thread. The average bytes per request must stay within the budget
+ * of allocation-budgets.properties; the allocation sites sampled with JFR are
+ * printed for every endpoint, so a regression shows where it comes from.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class UserControllerAllocationTest {
+
+  private static final int WARMUP_REQUESTS = 300;
+
+  private static final int MEASURED_REQUESTS = 200;
+
+  private static final int USERS = 20;
+
+  private static final Properties BUDGETS = new Properties();
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  private final List<User> users = new ArrayList<>();
+
+  @BeforeAll
+  public static void loadBudgets() throws IOException {
+    try (InputStream in = UserControllerAllocationTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+      BUDGETS.load(in);
+    }
+  }
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    userReadModel.refresh();
+    users.clear();
+    for (int i = 0; i < USERS; i++) {
+      User user = new User();
+      user.setUsername("allocUser" + i);
+      user.setPassword("password");
+      users.add(userService.createUser(user));
+    }
+  }
+
+  @Test
+  public void getUsers_withinBudget() throws Exception {
+    assertWithinBudget("GET_users", i -> get("/users"));
+  }
+
+  @Test
+  public void getUser_withinBudget() throws Exception {
+    assertWithinBudget("GET_user", i -> get("/users/" + user(i).getId()));
+  }
+
+  @Test
+  public void createUser_withinBudget() throws Exception {
+    assertWithinBudget("POST_users", i -> post("/users")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"username\":\"new" + i + "\",\"password\":\"password\"}"));
+  }
+
+  @Test
+  public void checkUser_withinBudget() throws Exception {
+    assertWithinBudget("POST_checkUser", i -> post("/checkUser")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"username\":\"" + user(i).getUsername() + "\",\"password\":\"password\"}"));
+  }
+
+  @Test
+  public void checkToken_withinBudget() throws Exception {
+    assertWithinBudget("POST_checkUser_id", i -> post("/checkUser/" + user(i).getId())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"token\":\"" + user(i).getToken() + "\"}"));
+  }
+
+  @Test
+  public void changeStatus_withinBudget() throws Exception {
+    assertWithinBudget("PUT_status", i -> put("/status")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"token\":\"" + user(i).getToken() + "\",\"status\":\"" + (i % 2 == 0 ? "OFFLINE" : "ONLINE") + "\"}"));
+  }
+
+  @Test
+  public void changeUser_withinBudget() throws Exception {
+    assertWithinBudget("PUT_users_id", i -> put("/users/" + user(i).getId())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"token\":\"" + user(i).getToken() + "\",\"birthday\":\"" + String.format("2000-01-%02d", 1 + i % 28) + "\"}"));
+  }
+
+  private User user(int request) {
+    return users.get(request % USERS);
+  }
+
+  private void assertWithinBudget(String endpoint, IntFunction<RequestBuilder> requests) throws Exception {
+    long budget = Long.parseLong(BUDGETS.getProperty(endpoint));
+    int request = 0;
+    for (int i = 0; i < WARMUP_REQUESTS; i++) {
+      perform(requests.apply(request++));
+    }
+
+    long bytesPerRequest;
+    List<String> topFrames;
+    try (AllocationRecorder recorder = new AllocationRecorder()) {
+      for (int i = 0; i < MEASURED_REQUESTS; i++) {
+        perform(requests.apply(request++));
+      }
+      bytesPerRequest = recorder.allocatedBytes() / MEASURED_REQUESTS;
+      topFrames = recorder.topFrames(10);
+    }
+
+    System.out.printf("%s: %d bytes/request (budget %d)%n", endpoint, bytesPerRequest, budget);
+    for (String frame : topFrames) {
+      System.out.println("  " + frame);
+    }
+    assertTrue(bytesPerRequest <= budget,
+        endpoint + " allocates " + bytesPerRequest + " bytes per request, budget is " + budget);
+  }
+
+  private void perform(RequestBuilder request) throws Exception {
+    mockMvc.perform(request).andExpect(status().is2xxSuccessful());
+  }
+}
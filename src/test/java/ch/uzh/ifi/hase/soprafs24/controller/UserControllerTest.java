@@ -2,32 +2,44 @@ package ch.uzh.ifi.hase.soprafs24.controller;
 
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.cache.UserJsonCache;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserStatsDTO;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.NestedServletException;
 
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -38,6 +50,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * This tests if the UserController works.
  */
 @WebMvcTest(UserController.class)
+@Import(UserJsonCache.class)
 public class UserControllerTest {
 
   @Autowired
@@ -46,6 +59,14 @@ public class UserControllerTest {
   @MockBean
   private UserService userService;
 
+  @Autowired
+  private UserJsonCache userJsonCache;
+
+  @BeforeEach
+  public void clearCache() {
+    userJsonCache.clear();
+  }
+
   @Test
   public void givenUsers_whenGetUsers_thenReturnJsonArray() throws Exception {
     // given
@@ -171,6 +192,96 @@ public class UserControllerTest {
   }
 
 
+  @Test
+  public void getUser_repeated_thenServedFromCache() throws Exception {
+    //given
+    User user = new User();
+    user.setId(5L);
+    user.setPassword("password");
+    user.setUsername("cachedUsername");
+    user.setToken("5");
+    user.setStatus(UserStatus.ONLINE);
+    user.setCreationDate();
+
+    given(userService.getUser(5L)).willReturn(user);
+
+    // when -> the same user is requested twice
+    for (int i = 0; i < 2; i++) {
+      mockMvc.perform(get("/users/5").contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.username", is(user.getUsername())));
+    }
+
+    // then -> the user was only loaded and serialized once
+    Mockito.verify(userService, Mockito.times(1)).getUser(5L);
+  }
+
+  @Test
+  public void getUsers_filteredByStatus_thenPageWithNextCursor() throws Exception {
+    // given
+    User first = new User();
+    first.setId(3L);
+    first.setUsername("first");
+    first.setStatus(UserStatus.ONLINE);
+    first.setCreationDate();
+    User second = new User();
+    second.setId(7L);
+    second.setUsername("second");
+    second.setStatus(UserStatus.ONLINE);
+    second.setCreationDate();
+
+    given(userService.getUsers(Mockito.eq(UserStatus.ONLINE), Mockito.any(), Mockito.eq(2)))
+        .willReturn(Arrays.asList(first, second));
+
+    // when/then -> the page is full, so there is a next page
+    mockMvc.perform(get("/users?status=ONLINE&sort=creationDate&limit=2").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)))
+        .andExpect(jsonPath("$[1].username", is("second")))
+        .andExpect(header().string(UserController.NEXT_CURSOR_HEADER, second.getCreationDate() + "_7"));
+  }
+
+  @Test
+  public void getUsers_invalidSort_thenStatus400() throws Exception {
+    mockMvc.perform(get("/users?sort=password").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/users?status=AWAY").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void getBirthdays_thenReturnJsonArray() throws Exception {
+    // given
+    User user = new User();
+    user.setId(4L);
+    user.setUsername("birthdayUser");
+    user.setStatus(UserStatus.ONLINE);
+    user.setBirthday(LocalDate.of(2000, 2, 29));
+
+    given(userService.getBirthdays(LocalDate.of(2024, 2, 27), 3)).willReturn(Collections.singletonList(user));
+
+    // when/then
+    mockMvc.perform(get("/users/birthdays?from=2024-02-27&days=3").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].username", is("birthdayUser")));
+  }
+
+  @Test
+  public void getStats_thenReturnCounters() throws Exception {
+    // given
+    given(userService.getStats()).willReturn(new UserStatsDTO(3, 2, 1, Collections.singletonMap("2024-03-01", 3L)));
+
+    // when/then
+    mockMvc.perform(get("/users/stats").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.total", is(3)))
+        .andExpect(jsonPath("$.online", is(2)))
+        .andExpect(jsonPath("$.offline", is(1)))
+        .andExpect(jsonPath("$.registrationsPerDay['2024-03-01']", is(3)));
+    Mockito.verify(userService, Mockito.never()).getUser(Mockito.any());
+  }
+
   @Test
   public void putUser_validInput_thenStatus204() throws Exception {
     //given
@@ -227,6 +338,31 @@ public class UserControllerTest {
 
 
 
+  @Test
+  public void changeStatus_concurrentUpdate_thenStatus409() throws Exception {
+    doThrow(new ObjectOptimisticLockingFailureException(User.class, 1L)).when(userService).changeStatus(Mockito.any());
+
+    mockMvc.perform(put("/status").contentType(MediaType.APPLICATION_JSON).content(asJsonString(statusChange())))
+        .andExpect(status().isConflict());
+  }
+
+  @Test
+  public void changeStatus_constraintViolation_notAnsweredAsConflict() {
+    // e.g. a NOT NULL column, retrying the request cannot help
+    doThrow(new DataIntegrityViolationException("not null")).when(userService).changeStatus(Mockito.any());
+
+    NestedServletException e = assertThrows(NestedServletException.class, () ->
+        mockMvc.perform(put("/status").contentType(MediaType.APPLICATION_JSON).content(asJsonString(statusChange()))));
+    assertTrue(e.getCause() instanceof DataIntegrityViolationException);
+  }
+
+  private static UserPostDTO statusChange() {
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setToken("1");
+    userPostDTO.setStatus(UserStatus.OFFLINE);
+    return userPostDTO;
+  }
+
   /**
    * Helper Method to convert userPostDTO into a JSON string such that the input
    * can be processed
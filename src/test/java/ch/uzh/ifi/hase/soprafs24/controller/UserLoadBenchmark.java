@@ -0,0 +1,90 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.load.HttpLoadDriver;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load benchmark of the servlet application. POST /checkUser/{id} is used since
+ * it is not cached and does two lookups in the database per request, so every
+ * request holds a Tomcat thread for the whole JPA round trip. Concurrent checks
+ * of the same user and token share one lookup (see UserService), so the
+ * requests go round-robin over twice as many users as the highest concurrency
+ * and no two requests in flight check the same user.
+ * The reactive variant runs the same scenario in its ReactiveUserLoadBenchmark.
+ * With ./gradlew benchmark -PvirtualThreads the requests run on virtual
+ * threads (label servlet-virtual), to compare with the platform threads of
+ * Tomcat's pool (label servlet) up to 10k concurrent connections. Both modes
+ * accept all of them and let the requests queue at the bulkheads instead of
+ * answering 503, so the thread model is compared rather than the load
+ * shedding. The client and the server hold the 10k connections in the same
+ * process, it needs a file limit above 20k (ulimit -n).
+ * Run with ./gradlew benchmark :reactive:benchmark and compare the rows of
+ * build/benchmark/load.csv.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = { "server.tomcat.max-connections=16384", "server.tomcat.accept-count=1024",
+        "users.db.bulkhead-wait-ms=10000" })
+public class UserLoadBenchmark {
+
+  private static final int[] CONCURRENCY = { 64, 256, 1024, 4096, 10_000 };
+
+  private static final int USERS = 20_000;
+
+  @LocalServerPort
+  private int port;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Value("${users.virtual-threads.enabled:false}")
+  private boolean virtualThreads;
+
+  @Test
+  public void checkToken() throws Exception {
+    userRepository.deleteAll();
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < USERS; i++) {
+      User user = new User();
+      user.setUsername("loadUser" + i);
+      user.setPassword("password");
+      users.add(userService.createUser(user));
+    }
+
+    AtomicInteger next = new AtomicInteger();
+    HttpLoadDriver driver = new HttpLoadDriver();
+    try {
+      for (int concurrency : CONCURRENCY) {
+        driver.run(virtualThreads ? "servlet-virtual" : "servlet", concurrency, Duration.ofSeconds(10), () -> {
+          User user = users.get(Math.floorMod(next.getAndIncrement(), USERS));
+          return HttpRequest.newBuilder(HttpLoadDriver.uri(port, "/checkUser/" + user.getId()))
+              .header("Content-Type", "application/json")
+              .POST(HttpRequest.BodyPublishers.ofString("{\"token\":\"" + user.getToken() + "\"}"))
+              .build();
+        });
+      }
+    }
+    finally {
+      driver.close();
+    }
+  }
+}
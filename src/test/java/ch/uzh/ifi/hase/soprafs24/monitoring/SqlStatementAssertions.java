@@ -0,0 +1,24 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import org.junit.jupiter.api.function.ThrowingSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Asserts the exact number of SQL statements Hibernate prepares for a call,
+ * so a changed query plan (e.g. an additional lookup or an N+1) fails a test
+ * instead of going unnoticed.
+ */
+public final class SqlStatementAssertions {
+
+  private SqlStatementAssertions() {
+  }
+
+  public static <T> T assertStatements(int expected, ThrowingSupplier<T> call) throws Throwable {
+    try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+      T result = call.get();
+      assertEquals(expected, scope.getStatements(), "number of SQL statements");
+      return result;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlStatementCounterTest {
+
+  private final SqlStatementCounter counter = new SqlStatementCounter();
+
+  @Test
+  public void inspect_withoutScope_notCounted() {
+    assertEquals("select 1", counter.inspect("select 1"));
+
+    try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+      assertEquals(0, scope.getStatements());
+    }
+  }
+
+  @Test
+  public void inspect_nestedScopes_countedInBoth() {
+    try (SqlStatementCounter.Scope outer = SqlStatementCounter.open()) {
+      counter.inspect("select a");
+      try (SqlStatementCounter.Scope inner = SqlStatementCounter.open()) {
+        counter.inspect("select b");
+        assertEquals(1, inner.getStatements());
+      }
+      counter.inspect("select c");
+      assertEquals(3, outer.getStatements());
+    }
+  }
+
+  @Test
+  public void inspect_repeatedStatement_detected() {
+    try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+      counter.inspect("select * from users");
+      for (int i = 0; i < 4; i++) {
+        counter.inspect("select * from users where id=?");
+      }
+      assertEquals(5, scope.getStatements());
+      assertEquals(4, scope.getMaxRepeats());
+      assertEquals("select * from users where id=?", scope.getMostRepeated());
+    }
+  }
+}
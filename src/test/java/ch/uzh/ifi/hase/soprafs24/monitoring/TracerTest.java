@@ -0,0 +1,94 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TraceLayer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TracerTest {
+
+  @Test
+  public void span_withoutTrace_noop() {
+    assertFalse(Tracer.isActive());
+    try (Tracer.Span span = Tracer.span(TraceLayer.SERVICE, "getUsers")) {
+      assertFalse(Tracer.isActive());
+    }
+  }
+
+  @Test
+  public void spans_nested_parentsAndExclusiveTime() throws Exception {
+    Trace trace = Tracer.begin("GET /users", 16);
+    try (Tracer.Span service = Tracer.span(TraceLayer.SERVICE, "UserService.getUsers")) {
+      try (Tracer.Span repository = Tracer.span(TraceLayer.REPOSITORY, "UserRepository.findAll")) {
+        try (Tracer.Span jdbc = Tracer.span(TraceLayer.JDBC, "executeQuery", "select * from user")) {
+          Thread.sleep(5);
+        }
+      }
+    }
+    try (Tracer.Span jackson = Tracer.span(TraceLayer.JACKSON, "write")) {
+      Thread.sleep(1);
+    }
+    Tracer.end(trace, 200);
+
+    assertFalse(Tracer.isActive());
+    assertEquals(5, trace.getSpans());
+    Map<TraceLayer, Long> byLayer = trace.exclusiveNanosByLayer();
+    assertTrue(byLayer.get(TraceLayer.JDBC) >= 5_000_000);
+    assertTrue(byLayer.get(TraceLayer.REPOSITORY) < byLayer.get(TraceLayer.JDBC));
+    assertEquals(trace.getDurationNanos(), byLayer.values().stream().mapToLong(Long::longValue).sum());
+
+    List<Map<String, Object>> spans = trace.toZipkin("soprafs24");
+    assertEquals(spans.get(0).get("id"), spans.get(0).get("traceId"));
+    assertEquals("SERVER", spans.get(0).get("kind"));
+    assertNull(spans.get(0).get("parentId"));
+    assertEquals(spans.get(2).get("id"), spans.get(3).get("parentId"));
+    assertEquals(spans.get(0).get("id"), spans.get(4).get("parentId"));
+    assertEquals(Map.of("layer", "jdbc", "sql.query", "select * from user"), spans.get(3).get("tags"));
+  }
+
+  @Test
+  public void spans_beyondMaximum_droppedWithTheirChildren() {
+    Trace trace = Tracer.begin("GET /users", 2);
+    try (Tracer.Span service = Tracer.span(TraceLayer.SERVICE, "UserService.getUsers")) {
+      try (Tracer.Span repository = Tracer.span(TraceLayer.REPOSITORY, "UserRepository.findAll")) {
+        try (Tracer.Span jdbc = Tracer.span(TraceLayer.JDBC, "executeQuery")) {
+          assertTrue(Tracer.isActive());
+        }
+      }
+      // the service span is still the open one
+      try (Tracer.Span mapper = Tracer.span(TraceLayer.MAPPER, "convert")) {
+        assertTrue(Tracer.isActive());
+      }
+    }
+    Tracer.end(trace, 200);
+
+    assertEquals(2, trace.getSpans());
+    assertEquals(3, trace.getDropped());
+    assertTrue(trace.getDurationNanos() >= 0);
+  }
+
+  @Test
+  public void slowestTraces_keptPerWindow() throws Exception {
+    SlowestTraces slowest = new SlowestTraces(10_000, 2);
+    long now = 1_000_000;
+    Trace[] traces = new Trace[4];
+    for (int i = 0; i < traces.length; i++) {
+      traces[i] = Tracer.begin("trace" + i, 1);
+      // trace i takes longer than trace i - 1
+      Thread.sleep(i + 1);
+      Tracer.end(traces[i], 200);
+    }
+    slowest.add(traces[1], now);
+    slowest.add(traces[3], now);
+    slowest.add(traces[0], now);
+    slowest.add(traces[2], now);
+
+    assertEquals(List.of(traces[3], traces[2]), slowest.get(now, 10));
+    assertEquals(List.of(traces[3]), slowest.get(now, 1));
+    // the bucket left the window
+    assertTrue(slowest.get(now + 10_000, 10).isEmpty());
+  }
+}
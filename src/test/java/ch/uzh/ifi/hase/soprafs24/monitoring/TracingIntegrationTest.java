@@ -0,0 +1,119 @@
+package ch.uzh.ifi.hase.soprafs24.monitoring;
+
+import ch.uzh.ifi.hase.soprafs24.controller.AdminAccess;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.UserReadModel;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Every request is traced through the whole stack; the spans of all layers
+ * show up in /admin/traces and in the exported traces.json.
+ */
+@SpringBootTest(properties = { "users.tracing.sample-rate=1", "users.admin.token=secret" })
+@AutoConfigureMockMvc
+public class TracingIntegrationTest {
+
+  private static final Path DIRECTORY =
+      Paths.get(System.getProperty("java.io.tmpdir"), "soprafs24-traces-" + UUID.randomUUID());
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @DynamicPropertySource
+  static void tracingDirectory(DynamicPropertyRegistry registry) {
+    registry.add("users.tracing.directory", DIRECTORY::toString);
+  }
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    userReadModel.refresh();
+  }
+
+  @Test
+  public void createUser_spansOfEveryLayer() throws Exception {
+    mockMvc.perform(post("/users")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"username\":\"tracedUser\",\"password\":\"password\"}"))
+        .andExpect(status().isCreated());
+
+    String body = mockMvc.perform(get("/admin/traces").header(AdminAccess.HEADER, "secret"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString();
+
+    JsonNode trace = null;
+    for (JsonNode slowest : objectMapper.readTree(body).get("slowest")) {
+      if ("POST /users".equals(slowest.get("name").asText())) {
+        trace = slowest;
+      }
+    }
+    assertNotNull(trace, body);
+    assertEquals(201, trace.get("status").asInt());
+    Set<String> layers = new HashSet<>();
+    trace.get("layersMs").fieldNames().forEachRemaining(layers::add);
+    assertEquals(Set.of("http", "jackson", "mapper", "service", "repository", "jdbc", "pool"), layers);
+  }
+
+  @Test
+  public void traces_exportedAsZipkinSpans() throws Exception {
+    mockMvc.perform(get("/users")).andExpect(status().isOk());
+
+    Path file = DIRECTORY.resolve(TraceFileWriter.ACTIVE_FILE);
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((!Files.exists(file) || Files.size(file) == 0) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    List<String> lines = Files.readAllLines(file);
+    assertFalse(lines.isEmpty());
+
+    JsonNode spans = objectMapper.readTree(lines.get(lines.size() - 1));
+    assertTrue(spans.isArray());
+    JsonNode root = spans.get(0);
+    assertEquals(16, root.get("traceId").asText().length());
+    assertEquals("SERVER", root.get("kind").asText());
+    assertTrue(root.get("timestamp").asLong() > 0);
+    assertTrue(root.get("duration").asLong() > 0);
+    assertEquals("http", root.get("tags").get("layer").asText());
+    for (JsonNode span : spans) {
+      assertEquals(root.get("traceId"), span.get("traceId"));
+    }
+  }
+
+  @Test
+  public void traces_requireAdminToken() throws Exception {
+    mockMvc.perform(get("/admin/traces")).andExpect(status().isForbidden());
+  }
+}
@@ -0,0 +1,92 @@
+package ch.uzh.ifi.hase.soprafs24.rest.cache;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.service.UserChangedEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserJsonCacheTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  private UserJsonCache userJsonCache;
+
+  @BeforeEach
+  public void setup() {
+    userJsonCache = new UserJsonCache(objectMapper, 100);
+  }
+
+  @Test
+  public void encode_cachesUntilUserChanged() {
+    User user = createUser(1L, "firstUser");
+
+    byte[] json = userJsonCache.encode(user, userJsonCache.stamp());
+    assertSame(json, userJsonCache.get(1L));
+
+    userJsonCache.onUserChanged(new UserChangedEvent(1L));
+    assertNull(userJsonCache.get(1L));
+  }
+
+  @Test
+  public void encode_invalidatedWhileLoading_notCached() {
+    long stamp = userJsonCache.stamp();
+    // the user is changed after it was loaded but before it was encoded
+    userJsonCache.onUserChanged(new UserChangedEvent(1L));
+
+    userJsonCache.encode(createUser(1L, "staleUser"), stamp);
+
+    assertNull(userJsonCache.get(1L));
+  }
+
+  @Test
+  public void encodeAll_joinsFragmentsToArray() throws Exception {
+    User first = createUser(1L, "firstUser");
+    User second = createUser(2L, "secondUser");
+    userJsonCache.encode(first, userJsonCache.stamp());
+
+    byte[] json = userJsonCache.encodeAll(Arrays.asList(first, second), userJsonCache.stamp());
+
+    JsonNode array = objectMapper.readTree(json);
+    assertEquals(2, array.size());
+    assertEquals("firstUser", array.get(0).get("username").asText());
+    assertEquals("secondUser", array.get(1).get("username").asText());
+    assertEquals("[]", new String(userJsonCache.encodeAll(Arrays.asList(), userJsonCache.stamp())));
+  }
+
+  @Test
+  public void encodeAll_moreUsersThanMaximum_sizeBounded() throws Exception {
+    List<User> users = new ArrayList<>();
+    for (long id = 1; id <= 1000; id++) {
+      users.add(createUser(id, "user" + id));
+    }
+
+    byte[] json = userJsonCache.encodeAll(users, userJsonCache.stamp());
+
+    assertEquals(1000, objectMapper.readTree(json).size());
+    assertTrue(userJsonCache.size() <= 100, userJsonCache.size() + " users cached");
+  }
+
+  private User createUser(Long id, String username) {
+    User user = new User();
+    user.setId(id);
+    user.setUsername(username);
+    user.setPassword("password");
+    user.setToken(String.valueOf(id));
+    user.setStatus(UserStatus.ONLINE);
+    user.setCreationDate();
+    return user;
+  }
+}
@@ -0,0 +1,53 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BirthdayWindowTest {
+
+  private static void assertRanges(BirthdayWindow window, int[]... expected) {
+    List<int[]> ranges = window.getRanges();
+    assertEquals(expected.length, ranges.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertArrayEquals(expected[i], ranges.get(i));
+    }
+  }
+
+  @Test
+  public void withinYear_oneRange() {
+    // Mar 1 is day 61 of a leap year, also in years without a leap day
+    assertRanges(BirthdayWindow.of(LocalDate.of(2023, 3, 1), 7), new int[] { 61, 67 });
+  }
+
+  @Test
+  public void pastNewYear_splitInTwoRanges() {
+    assertRanges(BirthdayWindow.of(LocalDate.of(2023, 12, 30), 5), new int[] { 365, 366 }, new int[] { 1, 3 });
+  }
+
+  @Test
+  public void leapDay_celebratedOnFeb28WithoutLeapYear() {
+    // 2023 has no Feb 29, the window ending on Feb 28 includes it
+    assertRanges(BirthdayWindow.of(LocalDate.of(2023, 2, 28), 1), new int[] { 59, 60 });
+    assertRanges(BirthdayWindow.of(LocalDate.of(2023, 3, 1), 1), new int[] { 61, 61 });
+    // 2024 has one
+    assertRanges(BirthdayWindow.of(LocalDate.of(2024, 2, 28), 1), new int[] { 59, 59 });
+    assertRanges(BirthdayWindow.of(LocalDate.of(2024, 2, 29), 1), new int[] { 60, 60 });
+  }
+
+  @Test
+  public void wholeYear_everyDayOnce() {
+    assertRanges(BirthdayWindow.of(LocalDate.of(2023, 1, 1), 366), new int[] { 1, 366 });
+    assertRanges(BirthdayWindow.of(LocalDate.of(2023, 3, 5), 366), new int[] { 65, 366 }, new int[] { 1, 64 });
+  }
+
+  @Test
+  public void invalidDays_throwsException() {
+    assertThrows(ResponseStatusException.class, () -> BirthdayWindow.of(LocalDate.of(2023, 1, 1), 0));
+    assertThrows(ResponseStatusException.class, () -> BirthdayWindow.of(LocalDate.of(2023, 1, 1), 367));
+  }
+}
@@ -0,0 +1,128 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactUserTableTest {
+
+  private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+  private static List<Long> ids(List<User> users) {
+    return users.stream().map(User::getId).collect(Collectors.toList());
+  }
+
+  private static void put(CompactUserTable table, long id, UserStatus status, LocalDate creationDate) {
+    table.put(id, 0, status, creationDate, null, "user" + id, "token" + id);
+  }
+
+  @Test
+  public void put_thenGet_allColumnsRoundTrip() {
+    CompactUserTable table = new CompactUserTable(0);
+    table.put(7, 0, UserStatus.OFFLINE, DAY, LocalDate.of(1990, 2, 28), "zoë", "token");
+
+    User user = table.get(7);
+
+    assertEquals(7L, user.getId());
+    assertEquals("zoë", user.getUsername());
+    assertEquals("token", user.getToken());
+    assertEquals(UserStatus.OFFLINE, user.getStatus());
+    assertEquals(DAY, user.getCreationDate());
+    assertEquals(LocalDate.of(1990, 2, 28), user.getBirthday());
+    assertEquals(59, user.getBirthdayDayOfYear());
+    assertNull(user.getPassword());
+    assertNull(table.get(8));
+  }
+
+  @Test
+  public void put_olderVersion_ignored() {
+    CompactUserTable table = new CompactUserTable(0);
+    table.put(1, 2, UserStatus.OFFLINE, DAY, null, "new", "token");
+
+    assertFalse(table.put(1, 1, UserStatus.ONLINE, DAY, null, "old", "token"));
+    assertEquals("new", table.get(1).getUsername());
+    assertTrue(table.put(1, 3, UserStatus.ONLINE, DAY, null, "newer", "token"));
+    assertEquals("newer", table.get(1).getUsername());
+  }
+
+  @Test
+  public void put_outOfOrderIds_keptInIdOrderAndGrows() {
+    CompactUserTable table = new CompactUserTable(0);
+    for (long id = 100; id > 0; id--) {
+      put(table, id, UserStatus.ONLINE, DAY);
+    }
+
+    assertEquals(100, table.size());
+    assertEquals(List.of(1L, 2L, 3L), ids(table.all()).subList(0, 3));
+    assertEquals(List.of(51L, 52L), ids(table.afterId(50, 2)));
+  }
+
+  @Test
+  public void afterId_endOfTable_shortPage() {
+    CompactUserTable table = new CompactUserTable(0);
+    for (long id = 1; id <= 6; id++) {
+      put(table, id, UserStatus.ONLINE, DAY);
+    }
+
+    assertEquals(List.of(5L, 6L), ids(table.afterId(4, 10)));
+    assertEquals(List.of(), ids(table.afterId(6, 10)));
+    assertEquals(List.of(1L), ids(table.afterId(0, 1)));
+  }
+
+  @Test
+  public void createdAfter_orderedByDateThenId() {
+    CompactUserTable table = new CompactUserTable(0);
+    put(table, 1, UserStatus.ONLINE, DAY.plusDays(2));
+    put(table, 2, UserStatus.ONLINE, DAY);
+    put(table, 3, UserStatus.OFFLINE, DAY.plusDays(1));
+    put(table, 4, UserStatus.ONLINE, DAY);
+
+    assertEquals(List.of(2L, 4L, 3L, 1L), ids(table.createdAfter(null, 0, 10)));
+    assertEquals(List.of(4L, 3L), ids(table.createdAfter(DAY, 2, 2)));
+    assertEquals(List.of(3L, 1L), ids(table.createdAfter(DAY, 4, 10)));
+
+    // appended in order, the order stays valid
+    put(table, 5, UserStatus.ONLINE, DAY.plusDays(3));
+    assertTrue(table.hasCreationOrder());
+    assertEquals(List.of(5L), ids(table.createdAfter(DAY.plusDays(2), 1, 10)));
+  }
+
+  @Test
+  public void renames_textCompacted() {
+    CompactUserTable table = new CompactUserTable(0);
+    put(table, 1, UserStatus.ONLINE, DAY);
+    put(table, 2, UserStatus.ONLINE, DAY);
+    for (int version = 1; version <= 10_000; version++) {
+      table.put(1, version, UserStatus.ONLINE, DAY, null, "renamed" + version, "token1");
+    }
+    long footprint = table.footprintBytes();
+
+    assertEquals("renamed10000", table.get(1).getUsername());
+    assertEquals("user2", table.get(2).getUsername());
+    assertTrue(footprint < 64 * 1024, "footprint " + footprint);
+  }
+
+  @Test
+  public void remove_thenDifferences() {
+    CompactUserTable table = new CompactUserTable(0);
+    CompactUserTable other = new CompactUserTable(0);
+    for (long id = 1; id <= 3; id++) {
+      put(table, id, UserStatus.ONLINE, DAY);
+      put(other, id, UserStatus.ONLINE, DAY);
+    }
+    assertEquals(0, table.differences(other));
+
+    other.put(2, 1, UserStatus.OFFLINE, DAY, null, "user2", "token2");
+    assertTrue(table.remove(3));
+    assertFalse(table.contains(3));
+
+    assertEquals(2, table.differences(other));
+    assertEquals(List.of(1L, 2L), ids(table.createdAfter(null, 0, 10)));
+  }
+}
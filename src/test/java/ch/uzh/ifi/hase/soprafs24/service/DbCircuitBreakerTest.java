@@ -0,0 +1,112 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DbCircuitBreakerTest {
+
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long OPEN = TimeUnit.SECONDS.toNanos(5);
+
+  private long now;
+
+  private DbCircuitBreaker breaker;
+
+  @BeforeEach
+  public void setup() {
+    now = 0;
+    // window of 10 calls, at least 4 recorded, opens at 50% failures or 50% slow calls, 2 probes
+    breaker = new DbCircuitBreaker(10, 4, 0.5, 0.5, SLOW, OPEN, 2, () -> now);
+  }
+
+  private void call(boolean failure) {
+    assertTrue(breaker.tryAcquire());
+    if (failure) {
+      breaker.onFailure();
+    }
+    else {
+      breaker.onSuccess(0);
+    }
+  }
+
+  @Test
+  public void failures_belowMinimumCalls_staysClosed() {
+    call(true);
+    call(true);
+    call(true);
+
+    assertEquals(DbCircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void failureRate_reached_opensAndRejects() {
+    call(false);
+    call(false);
+    call(true);
+    call(true);
+
+    assertEquals(DbCircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+    assertEquals(1, breaker.getTransitionsToOpen());
+  }
+
+  @Test
+  public void slowCalls_reached_opens() {
+    for (int i = 0; i < 4; i++) {
+      assertTrue(breaker.tryAcquire());
+      breaker.onSuccess(SLOW);
+    }
+
+    assertEquals(DbCircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  @Test
+  public void oldFailures_slideOutOfWindow() {
+    call(true);
+    call(true);
+    call(false);
+    for (int i = 0; i < 10; i++) {
+      call(false);
+    }
+    // the window now holds 10 successes, one failure more is 10%
+    call(true);
+
+    assertEquals(DbCircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void openDuration_elapsed_probesCloseAgain() {
+    failureRate_reached_opensAndRejects();
+
+    now += OPEN;
+    assertTrue(breaker.tryAcquire());
+    assertTrue(breaker.tryAcquire());
+    // only two probes at a time
+    assertFalse(breaker.tryAcquire());
+    assertEquals(DbCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+    breaker.onSuccess(0);
+    breaker.onSuccess(0);
+
+    assertEquals(DbCircuitBreaker.State.CLOSED, breaker.getState());
+    call(true);
+    assertEquals(DbCircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void failedProbe_opensAgain() {
+    failureRate_reached_opensAndRejects();
+
+    now += OPEN;
+    assertTrue(breaker.tryAcquire());
+    breaker.onFailure();
+
+    assertEquals(DbCircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+    assertEquals(2, breaker.getTransitionsToOpen());
+  }
+}
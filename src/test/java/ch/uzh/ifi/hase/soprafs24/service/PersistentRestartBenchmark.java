@@ -0,0 +1,103 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.Application;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Time to ready of the persistent profile with 1M stored users: the time from
+ * starting the application until it reports ACCEPTING_TRAFFIC, i.e. opening
+ * the database file, checking the migrations, loading the UserReadModel and
+ * the UserStats and the warm up. The first start creates the schema and stores
+ * the users, the following ones are restarts on the same file.
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+public class PersistentRestartBenchmark {
+
+  private static final int USERS = 1_000_000;
+
+  private static final int RESTARTS = 3;
+
+  private static final String INSERT_USER =
+      "insert into user (id, username, password, token, status, creation_date, birthday, birthday_day_of_year, version)"
+          + " values (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void timeToReady() throws IOException {
+    long start = System.nanoTime();
+    try (ConfigurableApplicationContext context = start()) {
+      double emptyMillis = (System.nanoTime() - start) / 1e6;
+      start = System.nanoTime();
+      insert(context.getBean(JdbcTemplate.class));
+      System.out.printf("empty start %.0f ms, stored %d users in %.1f s%n", emptyMillis, USERS,
+          (System.nanoTime() - start) / 1e9);
+      start = System.nanoTime();
+    }
+    System.out.printf("closed within %.0f ms, database file %d MB%n", (System.nanoTime() - start) / 1e6,
+        databaseBytes() / (1024 * 1024));
+
+    System.out.printf("%8s %14s %12s%n", "restart", "ready ms", "close ms");
+    for (int restart = 1; restart <= RESTARTS; restart++) {
+      start = System.nanoTime();
+      ConfigurableApplicationContext context = start();
+      double readyMillis = (System.nanoTime() - start) / 1e6;
+      assertEquals(ReadinessState.ACCEPTING_TRAFFIC, context.getBean(ApplicationAvailability.class).getReadinessState());
+      assertEquals(USERS, context.getBean(UserReadModel.class).size());
+
+      start = System.nanoTime();
+      context.close();
+      System.out.printf("%8d %14.0f %12.0f%n", restart, readyMillis, (System.nanoTime() - start) / 1e6);
+    }
+  }
+
+  private ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(Application.class)
+        .profiles("persistent")
+        .properties("server.port=0", "users.storage.directory=" + tempDir.toAbsolutePath())
+        .run();
+  }
+
+  private static void insert(JdbcTemplate jdbcTemplate) {
+    List<Object[]> batch = new ArrayList<>();
+    for (long id = 1; id <= USERS; id++) {
+      LocalDate creationDate = LocalDate.of(2024, 1, 1).plusDays(id % 365);
+      LocalDate birthday = LocalDate.of(1990, 1, 1).plusDays(id % 7000);
+      batch.add(new Object[] { id, "user" + id, "password", "token" + id, UserStatus.values()[(int) (id % 2)].ordinal(),
+          creationDate, birthday, User.dayOfLeapYear(birthday) });
+      if (batch.size() == 10_000) {
+        jdbcTemplate.batchUpdate(INSERT_USER, batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_USER, batch);
+    }
+    // registrations after the restarts get ids above the stored users
+    jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + (USERS + 1));
+  }
+
+  private long databaseBytes() throws IOException {
+    return Files.size(tempDir.resolve("users.mv.db"));
+  }
+}
@@ -0,0 +1,84 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.Application;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The persistent profile: the schema is created by the migrations (and
+ * validated against the entities by Hibernate on every start) and the users
+ * are still there after a restart.
+ */
+public class PersistentStorageIntegrationTest {
+
+  @TempDir
+  Path tempDir;
+
+  private ConfigurableApplicationContext context;
+
+  @AfterEach
+  public void tearDown() {
+    if (context != null) {
+      context.close();
+    }
+  }
+
+  @Test
+  public void restart_usersAreKept() {
+    context = start();
+    assertEquals(3, context.getBean(Flyway.class).info().applied().length);
+    User stored = userService().createUser(newUser("stored"));
+    context.close();
+    assertTrue(Files.exists(tempDir.resolve("users.mv.db")));
+
+    context = start();
+    // nothing left to migrate
+    assertEquals(0, context.getBean(Flyway.class).info().pending().length);
+    assertEquals("stored", userService().getUser(stored.getId()).getUsername());
+    assertEquals(1, context.getBean(UserReadModel.class).size());
+    User next = userService().createUser(newUser("next"));
+    assertNotEquals(stored.getId(), next.getId());
+  }
+
+  @Test
+  public void createUser_takenUsername_conflictFromMigratedConstraint() {
+    context = start();
+    userService().createUser(newUser("taken"));
+
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> userService().createUser(newUser("taken")));
+    assertEquals(HttpStatus.CONFLICT, e.getStatus());
+    assertEquals(UserRules.USERNAME_EXISTS, e.getReason());
+  }
+
+  private ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(Application.class)
+        .profiles("persistent")
+        .properties("server.port=0", "users.storage.directory=" + tempDir.toAbsolutePath())
+        .run();
+  }
+
+  private UserService userService() {
+    return context.getBean(UserService.class);
+  }
+
+  private static User newUser(String username) {
+    User user = new User();
+    user.setUsername(username);
+    user.setPassword("password");
+    return user;
+  }
+}
@@ -0,0 +1,58 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecureTokenGeneratorTest {
+
+  @Test
+  public void nextToken_defaultLength_base64urlWithoutPadding() {
+    SecureTokenGenerator generator = new SecureTokenGenerator(32, "DRBG");
+
+    String token = generator.nextToken();
+
+    assertEquals(43, token.length());
+    assertEquals(generator.getTokenLength(), token.length());
+    assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    assertEquals(32, Base64.getUrlDecoder().decode(token).length);
+  }
+
+  @Test
+  public void nextToken_configuredBytes_lengthFollows() {
+    assertEquals(22, new SecureTokenGenerator(16, "DRBG").nextToken().length());
+    assertEquals(86, new SecureTokenGenerator(64, "DRBG").nextToken().length());
+  }
+
+  @Test
+  public void constructor_invalidConfiguration_throwsException() {
+    assertThrows(IllegalArgumentException.class, () -> new SecureTokenGenerator(8, "DRBG"));
+    assertThrows(IllegalArgumentException.class, () -> new SecureTokenGenerator(128, "DRBG"));
+    assertThrows(IllegalStateException.class, () -> new SecureTokenGenerator(32, "NO-SUCH-PRNG"));
+  }
+
+  @Test
+  public void nextToken_manyThreads_noDuplicates() throws Exception {
+    SecureTokenGenerator generator = new SecureTokenGenerator(16, "DRBG");
+    Set<String> tokens = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int t = 0; t < 4; t++) {
+      executor.submit(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          tokens.add(generator.nextToken());
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    assertEquals(40_000, tokens.size());
+  }
+}
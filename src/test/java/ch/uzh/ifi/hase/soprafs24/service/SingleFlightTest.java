@@ -0,0 +1,63 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+  private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void execute_differentKeys_notShared() {
+    assertEquals("a", singleFlight.execute("a", () -> "a"));
+    assertEquals("b", singleFlight.execute("b", () -> "b"));
+
+    assertEquals(2, singleFlight.getExecutions());
+    assertEquals(0, singleFlight.getShared());
+  }
+
+  @Test
+  public void execute_loaderFails_exceptionSharedAndNotKept() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      throw new IllegalStateException("database down");
+    }), executor);
+    while (singleFlight.getExecutions() == 0) {
+      Thread.sleep(1);
+    }
+    CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> "own"), executor);
+    while (singleFlight.getShared() == 0) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+
+    Exception leaderFailure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+    Exception followerFailure = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+    assertTrue(leaderFailure.getCause() instanceof IllegalStateException);
+    assertSame(leaderFailure.getCause(), followerFailure.getCause());
+
+    // the failure is not remembered
+    assertEquals("again", singleFlight.execute("key", () -> "again"));
+  }
+}
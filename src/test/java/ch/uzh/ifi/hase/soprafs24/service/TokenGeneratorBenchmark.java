@@ -0,0 +1,68 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput of the registration tokens with an increasing number of threads,
+ * UUID.randomUUID (one shared SecureRandom) against the SecureTokenGenerator
+ * (one SecureRandom per thread).
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+public class TokenGeneratorBenchmark {
+
+  private static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+
+  private static final int TOKENS_PER_THREAD = 100_000;
+
+  @Test
+  public void throughput() throws Exception {
+    TokenGenerator uuid = () -> UUID.randomUUID().toString();
+    TokenGenerator secure = new SecureTokenGenerator(32, "DRBG");
+    // warm up both paths before measuring
+    run(uuid, 4);
+    run(secure, 4);
+
+    System.out.printf("%8s %14s %14s %8s%n", "threads", "uuid tokens/s", "drbg tokens/s", "speedup");
+    for (int threads : THREADS) {
+      double uuidRate = run(uuid, threads);
+      double secureRate = run(secure, threads);
+      System.out.printf("%8d %14.0f %14.0f %8.2f%n", threads, uuidRate, secureRate, secureRate / uuidRate);
+    }
+  }
+
+  private double run(TokenGenerator generator, int threads) throws Exception {
+    LongAdder characters = new LongAdder();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.submit(() -> {
+        start.await();
+        long length = 0;
+        for (int i = 0; i < TOKENS_PER_THREAD; i++) {
+          length += generator.nextToken().length();
+        }
+        // keeps the tokens from being optimized away
+        characters.add(length);
+        return null;
+      });
+    }
+    long startNanos = System.nanoTime();
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    assertTrue(characters.sum() > 0);
+    return (double) threads * TOKENS_PER_THREAD / seconds;
+  }
+}
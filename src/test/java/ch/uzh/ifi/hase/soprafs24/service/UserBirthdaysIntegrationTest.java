@@ -0,0 +1,88 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WebAppConfiguration
+@SpringBootTest
+public class UserBirthdaysIntegrationTest {
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @BeforeEach
+  public void setup() throws IllegalAccessException {
+    userRepository.deleteAll();
+    // deleted behind the back of the read model
+    userReadModel.refresh();
+    birthday("newYearsEve", LocalDate.of(1990, 12, 31));
+    birthday("newYear", LocalDate.of(1985, 1, 1));
+    birthday("leapDay", LocalDate.of(2000, 2, 29));
+    birthday("march", LocalDate.of(1999, 3, 1));
+    userService.createUser(newUser("noBirthday"));
+  }
+
+  private User newUser(String username) {
+    User user = new User();
+    user.setUsername(username);
+    user.setPassword("password");
+    return user;
+  }
+
+  private void birthday(String username, LocalDate birthday) throws IllegalAccessException {
+    User created = userService.createUser(newUser(username));
+    User change = new User();
+    change.setToken(created.getToken());
+    change.setBirthday(birthday);
+    userService.changeUser(change, created.getId());
+  }
+
+  private List<String> birthdays(LocalDate from, int days) {
+    return userService.getBirthdays(from, days).stream().map(User::getUsername).collect(Collectors.toList());
+  }
+
+  @Test
+  public void changeUser_birthday_dayOfYearInSync() throws IllegalAccessException {
+    User user = userRepository.findByUsername("march");
+    assertEquals(61, user.getBirthdayDayOfYear());
+
+    User change = new User();
+    change.setToken(user.getToken());
+    change.setBirthday(null);
+    userService.changeUser(change, user.getId());
+
+    assertNull(userRepository.findByUsername("march").getBirthdayDayOfYear());
+  }
+
+  @Test
+  public void getBirthdays_acrossNewYear_inOrder() {
+    assertEquals(Arrays.asList("newYearsEve", "newYear"), birthdays(LocalDate.of(2023, 12, 30), 5));
+  }
+
+  @Test
+  public void getBirthdays_leapDay() {
+    assertEquals(Arrays.asList("leapDay"), birthdays(LocalDate.of(2023, 2, 28), 1));
+    assertEquals(Arrays.asList("march"), birthdays(LocalDate.of(2023, 3, 1), 1));
+    assertEquals(Arrays.asList("leapDay", "march"), birthdays(LocalDate.of(2024, 2, 29), 2));
+  }
+}
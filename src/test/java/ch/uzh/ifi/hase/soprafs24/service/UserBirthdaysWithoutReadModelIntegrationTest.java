@@ -0,0 +1,12 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+/**
+ * The birthdays of UserBirthdaysIntegrationTest without the UserReadModel.
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = "users.readmodel.enabled=false")
+public class UserBirthdaysWithoutReadModelIntegrationTest extends UserBirthdaysIntegrationTest {
+}
@@ -0,0 +1,122 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserImportResultDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WebAppConfiguration
+@SpringBootTest(properties = "users.bulk.chunk-size=2")
+public class UserBulkServiceIntegrationTest {
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserBulkService userBulkService;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void exportThenImport_restoresUsers() throws Exception {
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      User user = new User();
+      user.setUsername("bulkUser" + i);
+      user.setPassword("password" + i);
+      users.add(userService.createUser(user));
+    }
+    User withBirthday = users.get(1);
+    withBirthday.setBirthday(LocalDate.of(1990, 2, 28));
+    userRepository.saveAndFlush(withBirthday);
+
+    ByteArrayOutputStream export = new ByteArrayOutputStream();
+    assertEquals(3, userBulkService.exportUsers(export));
+    String ndjson = export.toString(StandardCharsets.UTF_8);
+    assertEquals(3, ndjson.split("\n").length);
+
+    userRepository.deleteAll();
+    UserImportResultDTO result = userBulkService.importUsers(new ByteArrayInputStream(export.toByteArray()));
+
+    // then -> 3 users in chunks of 2
+    assertEquals(3, result.getRows());
+    assertEquals(2, result.getChunks());
+    for (User user : users) {
+      User imported = userRepository.findById(user.getId()).orElseThrow();
+      assertEquals(user.getUsername(), imported.getUsername());
+      assertEquals(user.getPassword(), imported.getPassword());
+      assertEquals(user.getToken(), imported.getToken());
+      assertEquals(user.getStatus(), imported.getStatus());
+      assertEquals(user.getCreationDate(), imported.getCreationDate());
+    }
+    assertEquals(LocalDate.of(1990, 2, 28), userRepository.findById(withBirthday.getId()).orElseThrow().getBirthday());
+
+    // new users get ids above the imported ones
+    User newUser = new User();
+    newUser.setUsername("afterImport");
+    newUser.setPassword("password");
+    assertTrue(userService.createUser(newUser).getId() > users.get(2).getId());
+  }
+
+  @Test
+  public void importUsers_missingField_throwsException() {
+    String ndjson = "{\"id\":1,\"username\":\"incomplete\"}\n";
+
+    assertThrows(ResponseStatusException.class,
+        () -> userBulkService.importUsers(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+  }
+
+  @Test
+  public void importUsers_missingPassword_badRequestForLine() {
+    String ndjson = "{\"id\":1,\"username\":\"noPassword\",\"token\":\"token\",\"status\":\"ONLINE\",\"creationDate\":\"2024-03-01\"}\n";
+
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> userBulkService.importUsers(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+    assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    assertTrue(e.getReason().startsWith("Line 1 "), e.getReason());
+  }
+
+  @Test
+  public void importUsers_laterLineFails_idSequenceAdvancedPastCommittedChunk() {
+    long highId = 1_000_001L;
+    String ndjson = line(highId - 1, "committed0") + line(highId, "committed1") + "{\"id\":1000002}\n";
+
+    assertThrows(ResponseStatusException.class,
+        () -> userBulkService.importUsers(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+
+    // the first chunk stays committed, new users must not collide with it
+    assertEquals(2, userRepository.count());
+    User newUser = new User();
+    newUser.setUsername("afterFailedImport");
+    newUser.setPassword("password");
+    assertTrue(userService.createUser(newUser).getId() > highId);
+  }
+
+  private static String line(long id, String username) {
+    return "{\"id\":" + id + ",\"username\":\"" + username + "\",\"password\":\"password\",\"token\":\"token" + id
+        + "\",\"status\":\"ONLINE\",\"creationDate\":\"2024-03-01\"}\n";
+  }
+}
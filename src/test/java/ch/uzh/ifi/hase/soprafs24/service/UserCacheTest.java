@@ -0,0 +1,38 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserCacheTest {
+
+  @Test
+  public void putIfUnchanged_moreUsersThanMaximum_sizeBounded() {
+    UserCache userCache = new UserCache(100);
+
+    for (long id = 1; id <= 1000; id++) {
+      userCache.putIfUnchanged(createUser(id), userCache.stamp());
+    }
+
+    assertTrue(userCache.size() <= 100, userCache.size() + " users cached");
+  }
+
+  @Test
+  public void putIfUnchanged_invalidatedWhileLoading_notCached() {
+    UserCache userCache = new UserCache(100);
+    long stamp = userCache.stamp();
+    userCache.evict(1L);
+
+    userCache.putIfUnchanged(createUser(1L), stamp);
+
+    assertNull(userCache.get(1L));
+  }
+
+  private static User createUser(long id) {
+    User user = new User();
+    user.setId(id);
+    user.setUsername("user" + id);
+    return user;
+  }
+}
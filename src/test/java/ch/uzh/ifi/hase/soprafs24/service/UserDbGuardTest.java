@@ -0,0 +1,116 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.DbOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserDbGuardTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  private UserDbGuard guard;
+
+  @BeforeEach
+  public void setup() {
+    PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    MockEnvironment environment = new MockEnvironment()
+        .withProperty("users.db.read.max-concurrent", "1")
+        .withProperty("users.db.bulkhead-wait-ms", "0")
+        .withProperty("users.db.breaker.window", "4")
+        .withProperty("users.db.breaker.minimum-calls", "2")
+        .withProperty("users.db.breaker.failure-rate", "0.5");
+    guard = new UserDbGuard(transactionManager, new UserUpdateRetryPolicy(transactionManager, 1, 0),
+        meterRegistry, environment);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private double rejections(DbOperation operation, String reason) {
+    return meterRegistry.get("users.db.rejections")
+        .tag("operation", operation.name())
+        .tag("reason", reason)
+        .counter()
+        .count();
+  }
+
+  @Test
+  public void execute_bulkheadFull_rejectedWith503() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<String> blocked = executor.submit(() -> guard.execute(DbOperation.READ, () -> {
+      started.countDown();
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "slow";
+    }));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> guard.execute(DbOperation.READ, () -> "fast"));
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+    assertEquals(1, rejections(DbOperation.READ, "bulkhead"));
+
+    // the other operations have their own bulkheads
+    assertEquals("write", guard.execute(DbOperation.WRITE, () -> "write"));
+
+    release.countDown();
+    assertEquals("slow", blocked.get(5, TimeUnit.SECONDS));
+    assertEquals("fast", guard.execute(DbOperation.READ, () -> "fast"));
+  }
+
+  @Test
+  public void execute_databaseFailures_breakerOpensWith503() {
+    for (int i = 0; i < 2; i++) {
+      assertThrows(QueryTimeoutException.class, () -> guard.execute(DbOperation.WRITE, () -> {
+        throw new QueryTimeoutException("timeout");
+      }));
+    }
+
+    assertEquals(DbCircuitBreaker.State.OPEN, guard.getBreakerState());
+    ResponseStatusException e = assertThrows(ResponseStatusException.class,
+        () -> guard.execute(DbOperation.AUTH, () -> "auth"));
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+    assertEquals(1, rejections(DbOperation.AUTH, "breaker"));
+    assertEquals(1, meterRegistry.get("users.db.breaker.state").gauge().value());
+  }
+
+  @Test
+  public void execute_conflicts_doNotOpenBreaker() {
+    for (int i = 0; i < 4; i++) {
+      assertThrows(DataIntegrityViolationException.class, () -> guard.execute(DbOperation.WRITE, () -> {
+        throw new DataIntegrityViolationException("duplicate");
+      }));
+      assertThrows(ResponseStatusException.class, () -> guard.execute(DbOperation.READ, () -> {
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+      }));
+    }
+
+    assertEquals(DbCircuitBreaker.State.CLOSED, guard.getBreakerState());
+  }
+}
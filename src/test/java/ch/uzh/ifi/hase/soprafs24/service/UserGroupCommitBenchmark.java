@@ -0,0 +1,147 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.audit.AuditLog;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput against latency of registrations and status changes with group
+ * commit off and with increasing windows. Writers run back to back, every
+ * writer registers users and then flips their status; the mutations per
+ * second, the p50/p99 latency and the average group size are reported.
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+@WebAppConfiguration
+@SpringBootTest
+public class UserGroupCommitBenchmark {
+
+  // window-ms, -1 runs with group commit disabled
+  private static final long[] WINDOWS = { -1, 0, 1, 2, 5, 10 };
+
+  private static final int[] WRITERS = { 4, 16 };
+
+  private static final int MUTATIONS_PER_WRITER = 300;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserCache userCache;
+
+  @Autowired
+  private UserChangePublisher userChangePublisher;
+
+  @Autowired
+  private UserDbGuard userDbGuard;
+
+  @Autowired
+  private AuditLog auditLog;
+
+  @Autowired
+  private UserStats userStats;
+
+  @Autowired
+  private TokenGenerator tokenGenerator;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAllInBatch();
+    userReadModel.refresh();
+  }
+
+  @Test
+  public void throughputAgainstLatency() throws Exception {
+    System.out.printf("%8s %8s %14s %10s %10s %12s%n", "window", "writers", "mutations/s", "p50 ms", "p99 ms", "group size");
+    int run = 0;
+    for (int writers : WRITERS) {
+      for (long window : WINDOWS) {
+        run(run++, writers, window);
+      }
+    }
+  }
+
+  private void run(int run, int writers, long windowMillis) throws Exception {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // the latency cap is the window, so it shows how long the callers actually wait
+    UserGroupCommit groupCommit = new UserGroupCommit(userDbGuard, entityManagerFactory, meterRegistry,
+        windowMillis >= 0, Math.max(0, windowMillis), Math.max(0, windowMillis), 64);
+    UserService userService = new UserService(userRepository, userCache, userChangePublisher, userDbGuard, auditLog,
+        userStats, tokenGenerator, userReadModel, groupCommit);
+
+    long[][] latencies = new long[writers][];
+    AtomicLong failures = new AtomicLong();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    for (int w = 0; w < writers; w++) {
+      int writer = w;
+      executor.submit(() -> {
+        long[] own = new long[MUTATIONS_PER_WRITER];
+        List<User> registered = new ArrayList<>();
+        start.await();
+        for (int i = 0; i < MUTATIONS_PER_WRITER; i++) {
+          long begin = System.nanoTime();
+          try {
+            if (i % 2 == 0) {
+              User newUser = new User();
+              newUser.setUsername("group" + run + "_" + writer + "_" + i);
+              newUser.setPassword("password");
+              registered.add(userService.createUser(newUser));
+            }
+            else {
+              User change = new User();
+              change.setToken(registered.get(registered.size() - 1).getToken());
+              change.setStatus(UserStatus.OFFLINE);
+              userService.changeStatus(change);
+            }
+          }
+          catch (RuntimeException e) {
+            failures.incrementAndGet();
+          }
+          own[i] = System.nanoTime() - begin;
+        }
+        latencies[writer] = own;
+        return null;
+      });
+    }
+    long startNanos = System.nanoTime();
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+    long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+    double groupSize = windowMillis < 0 ? 1 : meterRegistry.summary("users.groupcommit.size").mean();
+    System.out.printf("%8s %8d %14.0f %10.2f %10.2f %12.1f%n", windowMillis < 0 ? "off" : windowMillis + "ms", writers,
+        all.length / seconds, all[all.length / 2] / 1e6, all[all.length * 99 / 100] / 1e6, groupSize);
+    assertEquals(0, failures.get());
+  }
+}
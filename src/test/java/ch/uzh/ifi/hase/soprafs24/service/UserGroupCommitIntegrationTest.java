@@ -0,0 +1,217 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.monitoring.SqlStatementCounter;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent mutations with group commit enabled: fewer transactions than
+ * mutations, and every caller still gets the result of its own mutation.
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = { "users.groupcommit.enabled=true", "users.groupcommit.window-ms=5",
+    "users.groupcommit.max-wait-ms=20" })
+public class UserGroupCommitIntegrationTest {
+
+  // within the bulkhead of the writes, so the callers running alone after a rollback are not rejected
+  private static final int CALLERS = 16;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    userReadModel.refresh();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void createUser_concurrent_fewerTransactionsThanRegistrations() throws Exception {
+    long groupsBefore = meterRegistry.summary("users.groupcommit.size").count();
+
+    List<Future<User>> results = runConcurrently(i -> () -> userService.createUser(newUser("grouped" + i)));
+
+    for (int i = 0; i < CALLERS; i++) {
+      User user = results.get(i).get();
+      assertEquals("grouped" + i, user.getUsername());
+      assertNotNull(user.getId());
+      assertNotNull(user.getToken());
+    }
+    assertEquals(CALLERS, userRepository.count());
+    long groups = meterRegistry.summary("users.groupcommit.size").count() - groupsBefore;
+    assertTrue(groups < CALLERS, groups + " transactions for " + CALLERS + " registrations");
+    assertEquals(0, userReadModel.check());
+  }
+
+  @Test
+  public void createUser_sameNameInGroup_oneWinnerOthersConflict() throws Exception {
+    List<Future<User>> results = runConcurrently(i -> () -> userService.createUser(newUser(i % 2 == 0 ? "taken" : "free" + i)));
+
+    int winners = 0;
+    for (int i = 0; i < CALLERS; i++) {
+      if (i % 2 == 1) {
+        assertEquals("free" + i, results.get(i).get().getUsername());
+        continue;
+      }
+      try {
+        results.get(i).get();
+        winners++;
+      }
+      catch (ExecutionException e) {
+        ResponseStatusException conflict = (ResponseStatusException) e.getCause();
+        assertEquals(HttpStatus.CONFLICT, conflict.getStatus());
+        assertEquals(UserRules.USERNAME_EXISTS, conflict.getReason());
+      }
+    }
+    assertEquals(1, winners);
+    assertEquals(CALLERS / 2 + 1, userRepository.count());
+  }
+
+  @Test
+  public void changeStatus_rejectedMutation_onlyThatCallerFails() throws Exception {
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      users.add(userService.createUser(newUser("status" + i)));
+    }
+
+    List<Future<User>> results = runConcurrently(i -> () -> {
+      User change = new User();
+      change.setToken(i == 3 ? "unknown" : users.get(i).getToken());
+      change.setStatus(UserStatus.OFFLINE);
+      userService.changeStatus(change);
+      return null;
+    });
+
+    for (int i = 0; i < CALLERS; i++) {
+      if (i == 3) {
+        ExecutionException e = assertThrows(ExecutionException.class, results.get(i)::get);
+        assertEquals(HttpStatus.NOT_FOUND, ((ResponseStatusException) e.getCause()).getStatus());
+        assertEquals(UserStatus.ONLINE, userRepository.findById(users.get(i).getId()).get().getStatus());
+      }
+      else {
+        results.get(i).get();
+        assertEquals(UserStatus.OFFLINE, userRepository.findById(users.get(i).getId()).get().getStatus());
+      }
+    }
+    assertEquals(0, userReadModel.check());
+  }
+
+  @Test
+  public void changeStatus_grouped_statementsChargedToEveryCaller() throws Exception {
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      users.add(userService.createUser(newUser("counted" + i)));
+    }
+
+    List<Future<Integer>> results = runConcurrently(i -> () -> {
+      try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+        User change = new User();
+        change.setToken(users.get(i).getToken());
+        change.setStatus(UserStatus.OFFLINE);
+        userService.changeStatus(change);
+        return scope.getStatements();
+      }
+    });
+
+    // every caller counts the lookup of its own mutation, the leader does not count those of the others
+    for (Future<Integer> result : results) {
+      assertTrue(result.get() >= 1);
+      assertTrue(result.get() < CALLERS, "statements of the whole group counted for one caller");
+    }
+  }
+
+  @Test
+  public void changeStatus_grouped_oneBatchedUpdatePerGroup() throws Exception {
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      users.add(userService.createUser(newUser("batched" + i)));
+    }
+    long groupsBefore = meterRegistry.summary("users.groupcommit.size").count();
+    double fallbacksBefore = meterRegistry.counter("users.groupcommit.fallbacks").count();
+
+    List<Future<Integer>> results = runConcurrently(i -> () -> {
+      try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+        User change = new User();
+        change.setToken(users.get(i).getToken());
+        change.setStatus(UserStatus.OFFLINE);
+        userService.changeStatus(change);
+        return scope.getStatements("update user ");
+      }
+    });
+
+    // a batch is prepared once, the leader counts the update of its group
+    int updates = 0;
+    for (Future<Integer> result : results) {
+      updates += result.get();
+    }
+    long groups = meterRegistry.summary("users.groupcommit.size").count() - groupsBefore;
+    assertEquals(0.0, meterRegistry.counter("users.groupcommit.fallbacks").count() - fallbacksBefore);
+    assertTrue(groups < CALLERS, groups + " transactions for " + CALLERS + " changes");
+    assertEquals(groups, updates);
+  }
+
+  private static User newUser(String username) {
+    User user = new User();
+    user.setUsername(username);
+    user.setPassword("password");
+    return user;
+  }
+
+  private <T> List<Future<T>> runConcurrently(IntFunction<Callable<T>> calls) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<T>> results = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      Callable<T> call = calls.apply(i);
+      results.add(executor.submit(() -> {
+        start.await();
+        return call.call();
+      }));
+    }
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    return results;
+  }
+}
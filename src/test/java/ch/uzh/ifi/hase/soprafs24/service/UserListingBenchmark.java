@@ -0,0 +1,140 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark of the status-filtered listing. The number of ONLINE users stays
+ * the same while the OFFLINE population grows, reading the ONLINE users page
+ * by page has to take about the same time for every population since only the
+ * index range of the ONLINE users is scanned. The query plans are printed as
+ * well. Runs with the default configuration, the UserReadModel is on but
+ * leaves the filtered pages to the database.
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+@WebAppConfiguration
+@SpringBootTest
+public class UserListingBenchmark {
+
+  private static final int[] OFFLINE_USERS = { 0, 50_000, 200_000, 500_000 };
+
+  private static final int ONLINE_USERS = 1_000;
+
+  private static final int PAGE_SIZE = 100;
+
+  private static final int ROUNDS = 20;
+
+  private static final String INSERT_USER =
+      "insert into user (id, username, password, token, status, creation_date, birthday, version) values (?, ?, ?, ?, ?, ?, ?, 0)";
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private long nextId = 1_000_000_000L;
+
+  @AfterEach
+  public void tearDown() {
+    userRepository.deleteAllInBatch();
+    userReadModel.refresh();
+  }
+
+  @Test
+  public void onlineUsers_growingOfflinePopulation() {
+    userRepository.deleteAllInBatch();
+    insert(UserStatus.ONLINE, ONLINE_USERS);
+    printPlan("select * from user where status = 0 and id > 0 order by id limit 100");
+    printPlan("select * from user where status = 0 and creation_date >= date '2024-01-01' order by creation_date, id limit 100");
+
+    System.out.printf("%12s %8s %16s %16s%n", "offline", "online", "by id ms/scan", "by date ms/scan");
+    int offline = 0;
+    double firstById = 0;
+    for (int population : OFFLINE_USERS) {
+      insert(UserStatus.OFFLINE, population - offline);
+      offline = population;
+
+      double byId = scanMillis(UserCursor.SORT_ID);
+      double byDate = scanMillis(UserCursor.SORT_CREATION_DATE);
+      System.out.printf("%12d %8d %16.2f %16.2f%n", population, ONLINE_USERS, byId, byDate);
+      if (population == 0) {
+        firstById = byId;
+      }
+      else {
+        // generous bound, a full scan of the table would be orders of magnitude slower
+        assertTrue(byId < Math.max(firstById, 1.0) * 10, "filtered read grew with the OFFLINE population");
+      }
+    }
+  }
+
+  // average time to read all ONLINE users page by page
+  private double scanMillis(String sort) {
+    scan(sort);
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      assertEquals(ONLINE_USERS, scan(sort));
+    }
+    return (System.nanoTime() - start) / 1e6 / ROUNDS;
+  }
+
+  private int scan(String sort) {
+    int users = 0;
+    UserCursor cursor = UserCursor.parse(sort, null);
+    List<User> page;
+    do {
+      page = userService.getUsers(UserStatus.ONLINE, cursor, PAGE_SIZE);
+      users += page.size();
+      if (!page.isEmpty()) {
+        cursor = UserCursor.parse(sort, UserCursor.encode(sort, page.get(page.size() - 1)));
+      }
+    } while (page.size() == PAGE_SIZE);
+    return users;
+  }
+
+  private void insert(UserStatus status, int count) {
+    List<Object[]> batch = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      long id = nextId++;
+      // spread over a year of registrations
+      LocalDate creationDate = LocalDate.of(2024, 1, 1).plusDays(id % 365);
+      batch.add(new Object[] { id, "user" + id, "password", "token" + id, status.ordinal(), creationDate, null });
+      if (batch.size() == 10_000) {
+        jdbcTemplate.batchUpdate(INSERT_USER, batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_USER, batch);
+    }
+    // inserted behind the back of the read model
+    userReadModel.refresh();
+  }
+
+  private void printPlan(String sql) {
+    jdbcTemplate.queryForList("explain " + sql, String.class).forEach(System.out::println);
+  }
+}
@@ -0,0 +1,107 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pages through the user listing with keyset cursors, every user has to show
+ * up exactly once and in order.
+ */
+@WebAppConfiguration
+@SpringBootTest
+public class UserListingIntegrationTest {
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private final List<User> users = new ArrayList<>();
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    users.clear();
+    // three days with several users each, so the id breaks the ties within a day
+    for (int i = 0; i < 9; i++) {
+      User user = new User();
+      user.setUsername("listed" + i);
+      user.setPassword("password");
+      user = userService.createUser(user);
+      if (i % 3 == 0) {
+        User offline = new User();
+        offline.setToken(user.getToken());
+        offline.setStatus(UserStatus.OFFLINE);
+        userService.changeStatus(offline);
+      }
+      jdbcTemplate.update("update user set creation_date = ? where id = ?", LocalDate.of(2024, 3, 3 - i % 3), user.getId());
+      users.add(userRepository.findById(user.getId()).get());
+    }
+    // the creation dates were changed behind the back of the read model
+    userReadModel.refresh();
+  }
+
+  private List<Long> pageThrough(UserStatus status, String sort) {
+    List<Long> ids = new ArrayList<>();
+    UserCursor cursor = UserCursor.parse(sort, null);
+    List<User> page;
+    do {
+      page = userService.getUsers(status, cursor, 2);
+      page.forEach(user -> ids.add(user.getId()));
+      if (!page.isEmpty()) {
+        cursor = UserCursor.parse(sort, UserCursor.encode(sort, page.get(page.size() - 1)));
+      }
+    } while (page.size() == 2);
+    return ids;
+  }
+
+  private List<Long> expected(UserStatus status, Comparator<User> order) {
+    return users.stream()
+        .filter(user -> status == null || user.getStatus() == status)
+        .sorted(order)
+        .map(User::getId)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void getUsers_byId_allPages() {
+    assertEquals(expected(null, Comparator.comparing(User::getId)), pageThrough(null, UserCursor.SORT_ID));
+    assertEquals(expected(UserStatus.ONLINE, Comparator.comparing(User::getId)),
+        pageThrough(UserStatus.ONLINE, UserCursor.SORT_ID));
+  }
+
+  @Test
+  public void getUsers_byCreationDate_allPages() {
+    Comparator<User> byCreationDate = Comparator.comparing(User::getCreationDate).thenComparing(User::getId);
+
+    assertEquals(expected(null, byCreationDate), pageThrough(null, UserCursor.SORT_CREATION_DATE));
+    assertEquals(expected(UserStatus.OFFLINE, byCreationDate),
+        pageThrough(UserStatus.OFFLINE, UserCursor.SORT_CREATION_DATE));
+    assertEquals(expected(UserStatus.ONLINE, byCreationDate),
+        pageThrough(UserStatus.ONLINE, UserCursor.SORT_CREATION_DATE));
+  }
+}
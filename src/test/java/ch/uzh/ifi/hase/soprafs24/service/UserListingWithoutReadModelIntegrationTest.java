@@ -0,0 +1,13 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+/**
+ * The listing of UserListingIntegrationTest without the UserReadModel, every
+ * page is a keyset query on the database.
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = "users.readmodel.enabled=false")
+public class UserListingWithoutReadModelIntegrationTest extends UserListingIntegrationTest {
+}
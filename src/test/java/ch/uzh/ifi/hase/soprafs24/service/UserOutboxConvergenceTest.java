@@ -0,0 +1,148 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.Application;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts several application instances in one JVM which share a file-mode H2
+ * database, just like several instances behind a load balancer share the real
+ * database, and checks that the local user caches converge after a mutation on
+ * any of them.
+ */
+public class UserOutboxConvergenceTest {
+
+  private static final int INSTANCES = 3;
+
+  private static final long MAX_LAG_MILLIS = 2000;
+
+  @TempDir
+  Path tempDir;
+
+  private final List<ConfigurableApplicationContext> instances = new ArrayList<>();
+
+  @AfterEach
+  public void tearDown() {
+    for (ConfigurableApplicationContext instance : instances) {
+      instance.close();
+    }
+  }
+
+  @Test
+  public void changeUser_onOneInstance_allInstancesConverge() throws Exception {
+    startInstances();
+    User createdUser = userService(0).createUser(newUser("outboxUser"));
+    Long id = createdUser.getId();
+
+    // warm every cache with the current state
+    for (int i = 0; i < INSTANCES; i++) {
+      assertEquals("outboxUser", userService(i).getUser(id).getUsername());
+    }
+
+    User change = new User();
+    change.setToken(createdUser.getToken());
+    change.setUsername("renamedUser");
+    userService(1).changeUser(change, id);
+
+    awaitAll(id, user -> "renamedUser".equals(user.getUsername()));
+  }
+
+  @Test
+  public void changeStatus_onOneInstance_allInstancesConverge() {
+    startInstances();
+    User createdUser = userService(0).createUser(newUser("statusUser"));
+    Long id = createdUser.getId();
+
+    for (int i = 0; i < INSTANCES; i++) {
+      assertEquals(UserStatus.ONLINE, userService(i).getUser(id).getStatus());
+    }
+
+    User change = new User();
+    change.setToken(createdUser.getToken());
+    change.setStatus(UserStatus.OFFLINE);
+    userService(2).changeStatus(change);
+
+    awaitAll(id, user -> user.getStatus() == UserStatus.OFFLINE);
+  }
+
+  @Test
+  public void importUsers_onOneInstance_allReadModelsConverge() throws Exception {
+    startInstances();
+    // warm every read model before the import
+    for (int i = 0; i < INSTANCES; i++) {
+      assertTrue(userService(i).getUsers().isEmpty());
+    }
+
+    String ndjson = "{\"id\":1000,\"username\":\"importedUser\",\"password\":\"password\",\"token\":\"importedToken\","
+        + "\"status\":\"OFFLINE\",\"creationDate\":\"2024-01-01\",\"birthday\":null,\"version\":0}\n";
+    instances.get(0).getBean(UserBulkService.class)
+        .importUsers(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+    // the listings are answered by the read models, so they only list the user once the import reached them
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < INSTANCES; i++) {
+      while (userService(i).getUsers().stream().noneMatch(user -> "importedUser".equals(user.getUsername()))) {
+        assertTrue(System.currentTimeMillis() - start < MAX_LAG_MILLIS, "instance " + i + " did not converge");
+        sleep();
+      }
+    }
+  }
+
+  private void startInstances() {
+    String url = "jdbc:h2:file:" + tempDir.resolve("users").toAbsolutePath();
+    for (int i = 0; i < INSTANCES; i++) {
+      instances.add(new SpringApplicationBuilder(Application.class)
+          .properties("server.port=0",
+              "spring.datasource.url=" + url,
+              "spring.jpa.hibernate.ddl-auto=update",
+              "users.outbox.poll-interval-ms=50",
+              "users.outbox.max-lag-ms=" + MAX_LAG_MILLIS)
+          .run());
+    }
+  }
+
+  private UserService userService(int instance) {
+    return instances.get(instance).getBean(UserService.class);
+  }
+
+  private void awaitAll(Long id, Predicate<User> converged) {
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < INSTANCES; i++) {
+      while (!converged.test(userService(i).getUser(id))) {
+        assertTrue(System.currentTimeMillis() - start < MAX_LAG_MILLIS, "instance " + i + " did not converge");
+        sleep();
+      }
+    }
+  }
+
+  private User newUser(String username) {
+    User user = new User();
+    user.setUsername(username);
+    user.setPassword("password");
+    return user;
+  }
+
+  private void sleep() {
+    try {
+      Thread.sleep(20);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Memory per user of the UserReadModel, both as computed from its arrays and
+ * as measured on the heap, next to the heap taken by the same users loaded as
+ * User entities. Also reports the time of a full listing from the model.
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+@WebAppConfiguration
+@SpringBootTest
+public class UserReadModelFootprintBenchmark {
+
+  private static final int[] USERS = { 10_000, 100_000, 500_000 };
+
+  private static final String INSERT_USER =
+      "insert into user (id, username, password, token, status, creation_date, birthday, birthday_day_of_year, version)"
+          + " values (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @AfterEach
+  public void tearDown() {
+    userRepository.deleteAllInBatch();
+    userReadModel.refresh();
+  }
+
+  @Test
+  public void footprint() {
+    System.out.printf("%10s %16s %16s %16s %14s%n", "users", "model B/user", "heap B/user", "entity B/user", "list all ms");
+    int inserted = 0;
+    for (int users : USERS) {
+      insert(inserted, users - inserted);
+      inserted = users;
+
+      long before = usedHeap();
+      userReadModel.refresh();
+      long modelHeap = usedHeap() - before;
+      long modelBytes = userReadModel.footprintBytes();
+      assertEquals(users, userReadModel.size());
+
+      before = usedHeap();
+      List<User> entities = userRepository.findAll();
+      long entityHeap = usedHeap() - before;
+      assertEquals(users, entities.size());
+      entities = null;
+
+      userService.getUsers();
+      long start = System.nanoTime();
+      assertEquals(users, userService.getUsers().size());
+      double listMillis = (System.nanoTime() - start) / 1e6;
+
+      System.out.printf("%10d %16d %16d %16d %14.1f%n", users, modelBytes / users, modelHeap / users,
+          entityHeap / users, listMillis);
+      assertTrue(modelBytes / users < 200, "read model takes more than 200 bytes per user");
+    }
+  }
+
+  // heap in use after collecting the garbage, the replaced model is garbage by then
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private void insert(int offset, int count) {
+    List<Object[]> batch = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      long id = 1_000_000_000L + offset + i;
+      LocalDate creationDate = LocalDate.of(2024, 1, 1).plusDays(id % 365);
+      LocalDate birthday = LocalDate.of(1990, 1, 1).plusDays(id % 7000);
+      batch.add(new Object[] { id, "user" + id, "password", "token" + id, UserStatus.values()[(int) (id % 2)].ordinal(),
+          creationDate, birthday, User.dayOfLeapYear(birthday) });
+      if (batch.size() == 10_000) {
+        jdbcTemplate.batchUpdate(INSERT_USER, batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_USER, batch);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static ch.uzh.ifi.hase.soprafs24.monitoring.SqlStatementAssertions.assertStatements;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The reads are answered by the UserReadModel, which follows the mutations of
+ * the UserService and is checked against the USER table.
+ */
+@WebAppConfiguration
+@SpringBootTest
+public class UserReadModelIntegrationTest {
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private User createdUser;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    userReadModel.refresh();
+    User newUser = new User();
+    newUser.setUsername("modelUser");
+    newUser.setPassword("password");
+    createdUser = userService.createUser(newUser);
+  }
+
+  @Test
+  public void reads_servedWithoutStatements() throws Throwable {
+    assertTrue(userReadModel.isCurrent());
+
+    List<User> users = assertStatements(0, () -> userService.getUsers());
+    User user = assertStatements(0, () -> userService.getUser(createdUser.getId()));
+    List<User> page = assertStatements(0, () ->
+        userService.getUsers(null, UserCursor.parse(UserCursor.SORT_CREATION_DATE, null), 10));
+    // the model has no index on the status, a filtered page is one query on the database
+    List<User> online = assertStatements(1, () ->
+        userService.getUsers(UserStatus.ONLINE, UserCursor.parse(UserCursor.SORT_CREATION_DATE, null), 10));
+
+    assertEquals(List.of(createdUser.getId()), users.stream().map(User::getId).collect(Collectors.toList()));
+    assertEquals("modelUser", user.getUsername());
+    assertEquals(createdUser.getToken(), user.getToken());
+    assertEquals(LocalDate.now(), user.getCreationDate());
+    assertEquals(1, page.size());
+    assertEquals(1, online.size());
+  }
+
+  @Test
+  public void mutations_appliedAfterCommit() throws Exception {
+    User status = new User();
+    status.setToken(createdUser.getToken());
+    status.setStatus(UserStatus.OFFLINE);
+    userService.changeStatus(status);
+
+    User change = new User();
+    change.setToken(createdUser.getToken());
+    change.setUsername("renamedModelUser");
+    change.setBirthday(LocalDate.of(1990, 6, 1));
+    userService.changeUser(change, createdUser.getId());
+
+    User user = userService.getUser(createdUser.getId());
+    assertEquals("renamedModelUser", user.getUsername());
+    assertEquals(UserStatus.OFFLINE, user.getStatus());
+    assertEquals(1, userService.getBirthdays(LocalDate.of(2024, 6, 1), 1).size());
+    assertEquals(0, userReadModel.check());
+  }
+
+  @Test
+  public void rejectedMutation_notApplied() {
+    User taken = new User();
+    taken.setUsername("modelUser");
+    taken.setPassword("password");
+
+    assertThrows(RuntimeException.class, () -> userService.createUser(taken));
+
+    assertEquals(1, userService.getUsers().size());
+    assertEquals(0, userReadModel.check());
+  }
+
+  @Test
+  public void check_changedBehindItsBack_differenceFoundAndRepaired() {
+    jdbcTemplate.update("update user set username = ?, version = version + 1 where id = ?", "direct", createdUser.getId());
+
+    assertEquals(1, userReadModel.check());
+
+    assertEquals("direct", userService.getUser(createdUser.getId()).getUsername());
+    assertEquals(0, userReadModel.check());
+  }
+
+  @Test
+  public void snapshot_reportsFootprint() {
+    userReadModel.refresh();
+
+    assertEquals(1, userReadModel.snapshot().get("users"));
+    assertTrue(userReadModel.snapshot().get("bytesPerUser").longValue() > 0);
+  }
+}
@@ -0,0 +1,98 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput of the duplicate-name storm of UserRegistrationStormTest for an
+ * increasing number of registrars, each of them tries to register every name.
+ * The attempts per second and the conflicts are reported, every name still has
+ * to be won exactly once.
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+@WebAppConfiguration
+@SpringBootTest
+public class UserRegistrationStormBenchmark {
+
+  private static final int[] REGISTRARS = { 1, 2, 4, 8, 16 };
+
+  private static final int NAMES = 500;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void duplicateNameStorm() throws Exception {
+    System.out.printf("%10s %10s %12s %10s%n", "registrars", "attempts", "attempts/s", "conflicts");
+    for (int registrars : REGISTRARS) {
+      run(registrars);
+    }
+  }
+
+  private void run(int registrars) throws Exception {
+    AtomicLong conflicts = new AtomicLong();
+    AtomicLong unexpected = new AtomicLong();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(registrars);
+    for (int r = 0; r < registrars; r++) {
+      executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < NAMES; i++) {
+          User newUser = new User();
+          newUser.setUsername("storm" + registrars + "_" + i);
+          newUser.setPassword("password");
+          try {
+            userService.createUser(newUser);
+          }
+          catch (ResponseStatusException e) {
+            if (e.getStatus() == HttpStatus.CONFLICT && UserRules.USERNAME_EXISTS.equals(e.getReason())) {
+              conflicts.incrementAndGet();
+            }
+            else {
+              unexpected.incrementAndGet();
+            }
+          }
+        }
+        return null;
+      });
+    }
+    long startNanos = System.nanoTime();
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+    long attempts = (long) registrars * NAMES;
+    System.out.printf("%10d %10d %12.0f %10d%n", registrars, attempts, attempts / seconds, conflicts.get());
+    assertEquals(0, unexpected.get());
+    assertEquals(attempts - NAMES, conflicts.get());
+  }
+}
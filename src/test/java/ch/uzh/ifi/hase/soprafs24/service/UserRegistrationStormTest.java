@@ -0,0 +1,125 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Duplicate-name storm against the unique constraint on the username.
+ * Every registrar tries to register every name at the same time, so each
+ * name must be won exactly once and all other attempts must end in the 409
+ * of a taken username. The throughput is measured by
+ * UserRegistrationStormBenchmark.
+ */
+@WebAppConfiguration
+@SpringBootTest
+public class UserRegistrationStormTest {
+
+  private static final int REGISTRARS = 8;
+
+  private static final int NAMES = 100;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserDbGuard userDbGuard;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void createUser_duplicateNameStorm_oneWinnerPerName() throws Exception {
+    Map<String, AtomicInteger> winners = new ConcurrentHashMap<>();
+    AtomicLong conflicts = new AtomicLong();
+    AtomicLong unexpected = new AtomicLong();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(REGISTRARS);
+    for (int r = 0; r < REGISTRARS; r++) {
+      executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < NAMES; i++) {
+          User newUser = new User();
+          newUser.setUsername("storm" + i);
+          newUser.setPassword("password");
+          try {
+            userService.createUser(newUser);
+            winners.computeIfAbsent(newUser.getUsername(), name -> new AtomicInteger()).incrementAndGet();
+          }
+          catch (ResponseStatusException e) {
+            if (e.getStatus() == HttpStatus.CONFLICT && UserRules.USERNAME_EXISTS.equals(e.getReason())) {
+              conflicts.incrementAndGet();
+            }
+            else {
+              unexpected.incrementAndGet();
+            }
+          }
+          catch (RuntimeException e) {
+            unexpected.incrementAndGet();
+          }
+        }
+        return null;
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+    long attempts = (long) REGISTRARS * NAMES;
+
+    assertEquals(0, unexpected.get());
+    assertEquals(NAMES, winners.size());
+    winners.values().forEach(count -> assertEquals(1, count.get()));
+    assertEquals(attempts - NAMES, conflicts.get());
+    assertEquals(NAMES, userRepository.count());
+    // conflicts are answers, not database failures
+    assertEquals(DbCircuitBreaker.State.CLOSED, userDbGuard.getBreakerState());
+  }
+
+  @Test
+  public void changeUser_renameToTakenUsername_conflict() throws Exception {
+    User first = new User();
+    first.setUsername("first");
+    first.setPassword("password");
+    userService.createUser(first);
+    User second = new User();
+    second.setUsername("second");
+    second.setPassword("password");
+    User createdSecond = userService.createUser(second);
+
+    User change = new User();
+    change.setToken(createdSecond.getToken());
+    change.setUsername("first");
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.changeUser(change, createdSecond.getId()));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    assertEquals(UserRules.USERNAME_EXISTS, exception.getReason());
+    assertEquals("second", userRepository.findById(createdSecond.getId()).get().getUsername());
+  }
+}
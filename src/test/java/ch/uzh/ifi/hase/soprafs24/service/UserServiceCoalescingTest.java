@@ -0,0 +1,126 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.audit.AuditLog;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * N concurrent identical lookups must result in a single query. The query is
+ * held back until all other callers are waiting for it.
+ */
+public class UserServiceCoalescingTest {
+
+  private static final int CALLERS = 32;
+
+  private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+
+  private final UserCache userCache = Mockito.mock(UserCache.class);
+
+  private final UserDbGuard userDbGuard = Mockito.mock(UserDbGuard.class);
+
+  // only the collaborators of the lookups matter, the read model (a mock) is not current
+  private final UserService userService = new UserService(userRepository, userCache,
+      Mockito.mock(UserChangePublisher.class), userDbGuard, Mockito.mock(AuditLog.class), Mockito.mock(UserStats.class),
+      Mockito.mock(TokenGenerator.class), Mockito.mock(UserReadModel.class), Mockito.mock(UserGroupCommit.class));
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+  private final CountDownLatch releaseQuery = new CountDownLatch(1);
+
+  private User testUser;
+
+  @BeforeEach
+  public void setup() {
+    testUser = new User();
+    testUser.setId(1L);
+    testUser.setUsername("popular");
+    testUser.setPassword("password");
+    testUser.setToken("token");
+
+    Mockito.when(userDbGuard.execute(Mockito.any(), Mockito.any()))
+        .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    Mockito.when(userRepository.findById(1L)).thenAnswer(invocation -> {
+      releaseQuery.await();
+      return Optional.of(testUser);
+    });
+    Mockito.when(userRepository.findByToken("token")).thenAnswer(invocation -> {
+      releaseQuery.await();
+      return testUser;
+    });
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private <T> List<T> callConcurrently(Callable<T> call) throws Exception {
+    List<Future<T>> futures = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      futures.add(executor.submit(call));
+    }
+    // all but the caller running the query have joined it
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (userService.getSharedLookups() < CALLERS - 1) {
+      assertTrue(System.nanoTime() < deadline, "callers did not join the running query");
+      Thread.sleep(1);
+    }
+    releaseQuery.countDown();
+
+    List<T> results = new ArrayList<>();
+    for (Future<T> future : futures) {
+      results.add(future.get(10, TimeUnit.SECONDS));
+    }
+    return results;
+  }
+
+  @Test
+  public void getUser_concurrentCallers_oneQuery() throws Exception {
+    List<User> users = callConcurrently(() -> userService.getUser(1L));
+
+    Mockito.verify(userRepository, Mockito.times(1)).findById(1L);
+    // only the caller that ran the query caches the user
+    Mockito.verify(userCache, Mockito.times(1)).putIfUnchanged(Mockito.eq(testUser), Mockito.anyLong());
+    assertEquals(CALLERS, users.size());
+    users.forEach(user -> assertSame(testUser, user));
+  }
+
+  @Test
+  public void tokenCheck_concurrentCallers_oneQuery() throws Exception {
+    User user = new User();
+    user.setToken("token");
+
+    List<Boolean> results = callConcurrently(() -> userService.tokenCheck(user, 1L));
+
+    Mockito.verify(userRepository, Mockito.times(1)).findByToken("token");
+    results.forEach(result -> assertTrue(result));
+  }
+
+  @Test
+  public void getUser_afterQueryCompleted_queriesAgain() {
+    releaseQuery.countDown();
+
+    userService.getUser(1L);
+    userService.getUser(1L);
+
+    // coalescing only covers calls in flight, caching is left to the UserCache (a mock here)
+    Mockito.verify(userRepository, Mockito.times(2)).findById(1L);
+  }
+}
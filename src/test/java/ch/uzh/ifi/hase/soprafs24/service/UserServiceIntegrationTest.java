@@ -9,8 +9,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -29,6 +37,9 @@ public class UserServiceIntegrationTest {
   @Autowired
   private UserService userService;
 
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
   @BeforeEach
   public void setup() {
     userRepository.deleteAll();
@@ -73,4 +84,48 @@ public class UserServiceIntegrationTest {
     // check that an error is thrown
     assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser2));
   }
+
+  @Test
+  public void changeUser_renameRacesStatusChange_renamedWithoutConflict() throws Exception {
+    User testUser = new User();
+    testUser.setPassword("testName");
+    testUser.setUsername("testUsername");
+    User createdUser = userService.createUser(testUser);
+
+    // a status change of the same user that is not committed yet
+    CountDownLatch updated = new CountDownLatch(1);
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> statusChange = executor.submit(() -> transaction.execute(status -> {
+        User user = userRepository.findById(createdUser.getId()).get();
+        user.setStatus(UserStatus.OFFLINE);
+        userRepository.flush();
+        updated.countDown();
+        try {
+          // the rename runs into the uncommitted row
+          Thread.sleep(200);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return user;
+      }));
+      assertTrue(updated.await(5, TimeUnit.SECONDS));
+
+      User change = new User();
+      change.setToken(createdUser.getToken());
+      change.setUsername("renamed");
+      userService.changeUser(change, createdUser.getId());
+      statusChange.get(5, TimeUnit.SECONDS);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    // the rename was retried on top of the status change instead of being answered as a taken username
+    User storedUser = userRepository.findById(createdUser.getId()).get();
+    assertEquals("renamed", storedUser.getUsername());
+    assertEquals(UserStatus.OFFLINE, storedUser.getStatus());
+  }
 }
@@ -0,0 +1,155 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static ch.uzh.ifi.hase.soprafs24.monitoring.SqlStatementAssertions.assertStatements;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exact SQL statement counts of the UserService methods. A mutation writes the
+ * user and one USER_OUTBOX row, every insert needs one call of the id sequence.
+ * The reads are counted against the database, without the UserReadModel.
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = "users.readmodel.enabled=false")
+public class UserServiceStatementCountTest {
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  private User createdUser;
+
+  @BeforeEach
+  public void setup() throws Throwable {
+    userRepository.deleteAll();
+
+    User newUser = new User();
+    newUser.setUsername("counted");
+    newUser.setPassword("password");
+    // sequence + insert of the user, sequence + insert of the outbox row, the unique constraint replaces the username lookup
+    createdUser = assertStatements(4, () -> userService.createUser(newUser));
+  }
+
+  @Test
+  public void getUsers_oneSelect() throws Throwable {
+    assertStatements(1, () -> userService.getUsers());
+  }
+
+  @Test
+  public void getUsers_pages_oneSelectPerPage() throws Throwable {
+    for (int i = 0; i < 4; i++) {
+      User user = new User();
+      user.setUsername("paged" + i);
+      user.setPassword("password");
+      userService.createUser(user);
+    }
+
+    for (String sort : new String[] { UserCursor.SORT_ID, UserCursor.SORT_CREATION_DATE }) {
+      for (UserStatus status : new UserStatus[] { null, UserStatus.ONLINE }) {
+        // the first page and the page after its cursor, each one keyset query
+        List<User> first = assertStatements(1, () -> userService.getUsers(status, UserCursor.parse(sort, null), 3));
+        UserCursor next = UserCursor.parse(sort, UserCursor.encode(sort, first.get(first.size() - 1)));
+        List<User> second = assertStatements(1, () -> userService.getUsers(status, next, 3));
+        assertEquals(3, first.size());
+        assertEquals(2, second.size());
+      }
+    }
+  }
+
+  @Test
+  public void getBirthdays_oneSelectPerRange() throws Throwable {
+    User change = new User();
+    change.setToken(createdUser.getToken());
+    change.setBirthday(LocalDate.of(1990, 12, 31));
+    userService.changeUser(change, createdUser.getId());
+
+    assertEquals(1, assertStatements(1, () -> userService.getBirthdays(LocalDate.of(2024, 12, 1), 31)).size());
+    // the window wraps around the end of the year, one range on either side
+    assertEquals(1, assertStatements(2, () -> userService.getBirthdays(LocalDate.of(2024, 12, 30), 5)).size());
+  }
+
+  @Test
+  public void getUser_selectOnce_thenCached() throws Throwable {
+    assertStatements(1, () -> userService.getUser(createdUser.getId()));
+    assertStatements(0, () -> userService.getUser(createdUser.getId()));
+  }
+
+  @Test
+  public void loginUser_offlineUser_selectAndUpdate() throws Throwable {
+    User offline = new User();
+    offline.setToken(createdUser.getToken());
+    offline.setStatus(UserStatus.OFFLINE);
+    userService.changeStatus(offline);
+
+    User credentials = new User();
+    credentials.setUsername("counted");
+    credentials.setPassword("password");
+
+    // username lookup, sequence of the outbox row, update of the user, insert of the outbox row
+    User loggedIn = assertStatements(4, () -> userService.loginUser(credentials));
+    assertEquals(UserStatus.ONLINE, loggedIn.getStatus());
+  }
+
+  @Test
+  public void changeStatus_selectAndUpdate() throws Throwable {
+    User offline = new User();
+    offline.setToken(createdUser.getToken());
+    offline.setStatus(UserStatus.OFFLINE);
+
+    // token lookup, update of the user, sequence + insert of the outbox row
+    assertStatements(4, () -> {
+      userService.changeStatus(offline);
+      return null;
+    });
+  }
+
+  @Test
+  public void changeUser_birthday_tokenLookupsAndUpdate() throws Throwable {
+    User change = new User();
+    change.setToken(createdUser.getToken());
+    change.setBirthday(LocalDate.of(2000, 2, 29));
+
+    // token lookup of tokenCheck (findById is served by the persistence context), token lookup,
+    // update of the user, sequence + insert of the outbox row
+    assertStatements(5, () -> {
+      userService.changeUser(change, createdUser.getId());
+      return null;
+    });
+  }
+
+  @Test
+  public void changeUser_username_noAdditionalUsernameLookup() throws Throwable {
+    User change = new User();
+    change.setToken(createdUser.getToken());
+    change.setUsername("renamed");
+
+    // same statements as any other change, the unique constraint checks the new username
+    assertStatements(5, () -> {
+      userService.changeUser(change, createdUser.getId());
+      return null;
+    });
+  }
+
+  @Test
+  public void tokenCheck_ownToken_oneSelect() throws Throwable {
+    User user = new User();
+    user.setToken(createdUser.getToken());
+
+    assertTrue(assertStatements(1, () -> userService.tokenCheck(user, createdUser.getId())));
+  }
+}
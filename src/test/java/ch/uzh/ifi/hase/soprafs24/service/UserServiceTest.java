@@ -1,16 +1,26 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.audit.AuditLog;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.validation.UserRules;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.jpa.JpaSystemException;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class UserServiceTest {
@@ -18,6 +28,32 @@ public class UserServiceTest {
   @Mock
   private UserRepository userRepository;
 
+  @Mock
+  private UserCache userCache;
+
+  @Mock
+  private UserChangePublisher userChangePublisher;
+
+  @Mock
+  private UserDbGuard userDbGuard;
+
+  @Mock
+  private AuditLog auditLog;
+
+  @Mock
+  private UserStats userStats;
+
+  @Mock
+  private TokenGenerator tokenGenerator;
+
+  // not current, the reads go to the repository
+  @Mock
+  private UserReadModel userReadModel;
+
+  // disabled, the mutations run alone
+  @Mock
+  private UserGroupCommit userGroupCommit;
+
   @InjectMocks
   private UserService userService;
 
@@ -36,6 +72,12 @@ public class UserServiceTest {
     // when -> any object is being save in the userRepository -> return the dummy
     // testUser
     Mockito.when(userRepository.save(Mockito.any())).thenReturn(testUser);
+    Mockito.when(tokenGenerator.nextToken()).thenReturn("token");
+    // the guard runs the calls right away
+    Mockito.when(userDbGuard.execute(Mockito.any(), Mockito.any()))
+        .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    Mockito.when(userDbGuard.executeUpdate(Mockito.any(), Mockito.any()))
+        .thenAnswer(invocation -> invocation.<UserUpdateRetryPolicy.Attempt<?, ?>>getArgument(1).run());
   }
 
   @Test
@@ -59,26 +101,58 @@ public class UserServiceTest {
     // given -> a first user has already been created
     userService.createUser(testUser);
 
-    // when -> setup additional mocks for UserRepository
-    Mockito.when(userRepository.findByPassword(Mockito.any())).thenReturn(null);
-    Mockito.when(userRepository.findByUsername(Mockito.any())).thenReturn(testUser);
+    // when -> the unique constraint on the username rejects the second insert
+    Mockito.doThrow(uniqueViolation(UserConstraints.USERNAME)).when(userRepository).flush();
 
-    // then -> attempt to create second user with same user -> check that an error
+    // then -> attempt to create second user with same user -> check that a conflict
     // is thrown
-    assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    assertEquals(UserRules.USERNAME_EXISTS, exception.getReason());
   }
 
   @Test
-  public void createUser_duplicateInputs_throwsException() {
-    // given -> a first user has already been created
-    userService.createUser(testUser);
+  public void createUser_duplicateToken_throwsException() {
+    // when -> the unique constraint on the token rejects the insert
+    Mockito.doThrow(uniqueViolation(UserConstraints.TOKEN)).when(userRepository).flush();
+
+    // then -> the token conflict is reported as such, not as a taken username
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    assertEquals(UserConstraints.TOKEN_EXISTS, exception.getReason());
+  }
 
-    // when -> setup additional mocks for UserRepository
-    Mockito.when(userRepository.findByPassword(Mockito.any())).thenReturn(testUser);
-    Mockito.when(userRepository.findByUsername(Mockito.any())).thenReturn(testUser);
+  @Test
+  public void createUser_otherIntegrityViolation_notTranslated() {
+    // when -> a violation that is no unique constraint (e.g. a missing password)
+    Mockito.doThrow(new DataIntegrityViolationException("not null",
+        new SQLException("NULL not allowed for column \"PASSWORD\"", "23502"))).when(userRepository).flush();
 
-    // then -> attempt to create second user with same user -> check that an error
-    // is thrown
-    assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
+    // then -> it is not mistaken for a conflict
+    assertThrows(DataIntegrityViolationException.class, () -> userService.createUser(testUser));
+  }
+
+  @Test
+  public void createUser_primaryKeyViolation_notAnsweredAsTakenUsername() {
+    // when -> a unique violation of another index than the username or token
+    Mockito.doThrow(uniqueViolation("PRIMARY_KEY_2")).when(userRepository).flush();
+
+    // then -> it is not reported as a taken username
+    assertThrows(DataIntegrityViolationException.class, () -> userService.createUser(testUser));
+  }
+
+  @Test
+  public void createUser_concurrentUpdate_thrownAsOptimisticLockFailure() {
+    // when -> H2 reports a row changed by a transaction that is not committed yet
+    Mockito.doThrow(new JpaSystemException(new PersistenceException("could not execute statement",
+        new SQLException("Concurrent update in table \"USER\"", "90131", 90131)))).when(userRepository).flush();
+
+    // then -> it is left to the retry policy instead of being answered as a taken username
+    assertThrows(OptimisticLockingFailureException.class, () -> userService.createUser(testUser));
+  }
+
+  private static DataIntegrityViolationException uniqueViolation(String constraint) {
+    return new DataIntegrityViolationException("could not execute statement",
+        new SQLException("Unique index or primary key violation: \"PUBLIC." + constraint + "_INDEX_2 ON PUBLIC.USER\"", "23505"));
   }
 }
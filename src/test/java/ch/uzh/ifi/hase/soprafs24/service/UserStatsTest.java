@@ -0,0 +1,84 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserStatsDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserStatsTest {
+
+  private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+  private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+
+  private UserStats userStats;
+
+  @BeforeEach
+  public void setup() {
+    userStats = new UserStats(userRepository);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void registeredAndStatusChanged_countersUpdated() {
+    userStats.registered(UserStatus.ONLINE, DAY);
+    userStats.registered(UserStatus.ONLINE, DAY);
+    userStats.statusChanged(UserStatus.ONLINE, UserStatus.OFFLINE);
+    userStats.statusChanged(UserStatus.OFFLINE, UserStatus.OFFLINE);
+
+    UserStatsDTO stats = userStats.snapshot();
+    assertEquals(2, stats.getTotal());
+    assertEquals(1, stats.getOnline());
+    assertEquals(1, stats.getOffline());
+    assertEquals(Collections.singletonMap("2024-03-01", 2L), stats.getRegistrationsPerDay());
+  }
+
+  @Test
+  public void registered_inTransaction_onlyCountedAfterCommit() {
+    TransactionSynchronizationManager.initSynchronization();
+    userStats.registered(UserStatus.ONLINE, DAY);
+
+    assertEquals(0, userStats.snapshot().getTotal());
+
+    for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+      synchronization.afterCommit();
+    }
+    assertEquals(1, userStats.snapshot().getTotal());
+  }
+
+  @Test
+  public void reconcile_setsCountersToTable() {
+    userStats.registered(UserStatus.ONLINE, DAY.minusDays(1));
+    Mockito.when(userRepository.countByStatus()).thenReturn(Arrays.asList(
+        new Object[] {UserStatus.ONLINE, 4L},
+        new Object[] {UserStatus.OFFLINE, 6L}));
+    Mockito.when(userRepository.countByCreationDate()).thenReturn(Collections.singletonList(
+        new Object[] {DAY, 10L}));
+
+    userStats.reconcile();
+
+    UserStatsDTO stats = userStats.snapshot();
+    assertEquals(10, stats.getTotal());
+    assertEquals(4, stats.getOnline());
+    assertEquals(6, stats.getOffline());
+    // the day missing in the table is dropped
+    assertEquals(Collections.singletonMap("2024-03-01", 10L), stats.getRegistrationsPerDay());
+  }
+}
@@ -0,0 +1,119 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Contention benchmark for the optimistic locking of user updates.
+ * An increasing number of writers update either the same user or one user each
+ * and the throughput and the retry rate are reported. Every successful update
+ * changes the birthday, so the final version of each user has to match the
+ * number of successful updates (no update got lost).
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+@WebAppConfiguration
+@SpringBootTest
+public class UserUpdateContentionBenchmark {
+
+  private static final int[] WRITERS = { 1, 2, 4, 8, 16 };
+
+  private static final int UPDATES_PER_WRITER = 200;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserUpdateRetryPolicy retryPolicy;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void contention() throws Exception {
+    System.out.printf("%-10s %8s %12s %12s %10s%n", "target", "writers", "updates/s", "retries/upd", "conflicts");
+    for (int writers : WRITERS) {
+      run("same", writers, true);
+      run("distinct", writers, false);
+    }
+  }
+
+  private void run(String label, int writers, boolean sameUser) throws Exception {
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < (sameUser ? 1 : writers); i++) {
+      User user = new User();
+      user.setUsername(label + writers + "_" + i);
+      user.setPassword("password");
+      users.add(userService.createUser(user));
+    }
+    long[] initialVersions = users.stream().mapToLong(user -> userRepository.findById(user.getId()).get().getVersion()).toArray();
+
+    long retriesBefore = retryPolicy.getRetries();
+    long conflictsBefore = retryPolicy.getConflicts();
+    AtomicLong successes = new AtomicLong();
+    AtomicLong birthdays = new AtomicLong();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    for (int w = 0; w < writers; w++) {
+      User target = users.get(sameUser ? 0 : w);
+      executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+          User change = new User();
+          change.setToken(target.getToken());
+          change.setBirthday(LocalDate.ofEpochDay(birthdays.incrementAndGet()));
+          try {
+            userService.changeUser(change, target.getId());
+            successes.incrementAndGet();
+          }
+          catch (ResponseStatusException e) {
+            // retries exhausted, counted as conflict by the policy
+          }
+        }
+        return null;
+      });
+    }
+    long startNanos = System.nanoTime();
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+    long retries = retryPolicy.getRetries() - retriesBefore;
+    long conflicts = retryPolicy.getConflicts() - conflictsBefore;
+    long total = (long) writers * UPDATES_PER_WRITER;
+    System.out.printf("%-10s %8d %12.0f %12.3f %10d%n", label, writers, total / seconds, (double) retries / total, conflicts);
+
+    long versionIncrements = 0;
+    for (int i = 0; i < users.size(); i++) {
+      versionIncrements += userRepository.findById(users.get(i).getId()).get().getVersion() - initialVersions[i];
+    }
+    assertEquals(successes.get(), versionIncrements);
+    assertEquals(total, successes.get() + conflicts);
+  }
+}
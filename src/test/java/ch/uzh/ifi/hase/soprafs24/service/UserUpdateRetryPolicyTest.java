@@ -0,0 +1,68 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserUpdateRetryPolicyTest {
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private UserUpdateRetryPolicy retryPolicy;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    retryPolicy = new UserUpdateRetryPolicy(transactionManager, 3, 0);
+  }
+
+  @Test
+  public void execute_conflictThenSuccess_retriesAndReturnsResult() {
+    AtomicInteger calls = new AtomicInteger();
+
+    String result = retryPolicy.execute(() -> {
+      if (calls.incrementAndGet() < 3) {
+        throw new OptimisticLockingFailureException("concurrent update");
+      }
+      return "updated";
+    });
+
+    assertEquals("updated", result);
+    assertEquals(2, retryPolicy.getRetries());
+    assertEquals(0, retryPolicy.getConflicts());
+    Mockito.verify(transactionManager, Mockito.times(2)).rollback(Mockito.any());
+    Mockito.verify(transactionManager, Mockito.times(1)).commit(Mockito.any());
+  }
+
+  @Test
+  public void execute_persistentConflict_throwsConflict() {
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> retryPolicy.execute(() -> {
+      throw new OptimisticLockingFailureException("concurrent update");
+    }));
+
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    assertEquals(3, retryPolicy.getAttempts());
+    assertEquals(1, retryPolicy.getConflicts());
+  }
+
+  @Test
+  public void execute_otherError_isNotRetried() {
+    assertThrows(ResponseStatusException.class, () -> retryPolicy.execute(() -> {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+    }));
+
+    assertEquals(1, retryPolicy.getAttempts());
+    Mockito.verify(transactionManager, Mockito.times(1)).rollback(Mockito.any());
+  }
+}
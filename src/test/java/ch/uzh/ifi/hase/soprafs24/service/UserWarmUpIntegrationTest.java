@@ -0,0 +1,67 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.cache.UserJsonCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WebAppConfiguration
+@SpringBootTest
+public class UserWarmUpIntegrationTest {
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserReadModel userReadModel;
+
+  @Autowired
+  private UserWarmUp userWarmUp;
+
+  @Autowired
+  private UserCache userCache;
+
+  @Autowired
+  private UserJsonCache userJsonCache;
+
+  @Autowired
+  private ApplicationAvailability applicationAvailability;
+
+  @Test
+  public void startup_readyAfterWarmUp() {
+    assertTrue(userWarmUp.getCompletedIterations() > 0);
+    assertEquals(ReadinessState.ACCEPTING_TRAFFIC, applicationAvailability.getReadinessState());
+  }
+
+  @Test
+  public void warmUp_leavesNothingBehindAndPreloadsCaches() {
+    userRepository.deleteAll();
+    userReadModel.refresh();
+    User newUser = new User();
+    newUser.setUsername("hot");
+    newUser.setPassword("password");
+    User hot = userService.createUser(newUser);
+    userCache.clear();
+    userJsonCache.clear();
+
+    userWarmUp.warmUp();
+
+    // the synthetic users were rolled back
+    assertEquals(1, userRepository.count());
+    assertNotNull(userCache.get(hot.getId()));
+    assertNotNull(userJsonCache.get(hot.getId()));
+    assertEquals(1, userCache.size());
+  }
+}
@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs24.validation;
+
+/**
+ * User Rules
+ * Validation rules for users and the messages sent along with a violation.
+ * They are shared between the servlet application and the reactive variant,
+ * so both answer the same requests the same way.
+ */
+public final class UserRules {
+
+  public static final int MAX_USERNAME_LENGTH = 20;
+
+  public static final String USERNAME_TOO_LONG = "Username too long";
+
+  public static final String USERNAME_EXISTS = "Username already exists";
+
+  public static final String WRONG_CREDENTIALS = "Wrong username or password";
+
+  public static final String USER_NOT_FOUND = "User could not be found";
+
+  public static final String NOT_AUTHENTICATED = "User could not be authenticated";
+
+  private UserRules() {
+  }
+
+  public static boolean isUsernameTooLong(String username) {
+    return username != null && username.length() > MAX_USERNAME_LENGTH;
+  }
+
+  //changed values are only applied if they are neither null nor empty
+  public static boolean isProvided(String value) {
+    return value != null && !value.isEmpty();
+  }
+
+  //a token authorizes access to the user with the given id if both resolve to the same credentials
+  public static boolean tokenMatches(String tokenOwnerPassword, String userPassword) {
+    return tokenOwnerPassword != null && tokenOwnerPassword.equals(userPassword);
+  }
+}
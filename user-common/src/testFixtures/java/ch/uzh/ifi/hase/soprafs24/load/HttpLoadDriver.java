@@ -0,0 +1,155 @@
+package ch.uzh.ifi.hase.soprafs24.load;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * HTTP Load Driver
+ * Closed-loop load generator shared by the load benchmarks of both variants:
+ * keeps the given number of requests in flight for the given duration and
+ * reports throughput and latency percentiles. The results are appended to
+ * load.csv in the directory given by the benchmark.dir system property (set by
+ * the benchmark tasks to the root build directory), so the runs of both
+ * variants end up side by side.
+ */
+public class HttpLoadDriver {
+
+  private final HttpClient client;
+
+  private final ExecutorService executor;
+
+  public HttpLoadDriver() {
+    executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(10))
+        .executor(executor)
+        .build();
+  }
+
+  public Result run(String label, int concurrency, Duration duration, Supplier<HttpRequest> requests)
+      throws InterruptedException {
+    Semaphore inFlight = new Semaphore(concurrency);
+    ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+    LongAdder errors = new LongAdder();
+    long start = System.nanoTime();
+    long end = start + duration.toNanos();
+    while (System.nanoTime() < end) {
+      inFlight.acquire();
+      long requestStart = System.nanoTime();
+      client.sendAsync(requests.get(), HttpResponse.BodyHandlers.discarding())
+          .whenComplete((response, error) -> {
+            if (error != null || response.statusCode() >= 400) {
+              errors.increment();
+            }
+            else {
+              latencies.add(System.nanoTime() - requestStart);
+            }
+            inFlight.release();
+          });
+    }
+    // wait for the requests still in flight
+    inFlight.acquire(concurrency);
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+    Arrays.sort(sorted);
+    Result result = new Result(label, concurrency, sorted.length / seconds, percentile(sorted, 0.5),
+        percentile(sorted, 0.99), errors.sum());
+    System.out.println(result);
+    append(result);
+    return result;
+  }
+
+  public void close() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  public static URI uri(int port, String path) {
+    return URI.create("http://localhost:" + port + path);
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    return sorted[(int) Math.min(sorted.length - 1, Math.floor(sorted.length * percentile))] / 1e6;
+  }
+
+  private static void append(Result result) {
+    try {
+      Path file = Path.of(System.getProperty("benchmark.dir", "build/benchmark"), "load.csv");
+      Files.createDirectories(file.getParent());
+      if (!Files.exists(file)) {
+        Files.writeString(file, "label,concurrency,requestsPerSecond,p50Millis,p99Millis,errors\n");
+      }
+      Files.writeString(file, result.toCsv() + "\n", StandardOpenOption.APPEND);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static class Result {
+
+    private final String label;
+
+    private final int concurrency;
+
+    private final double requestsPerSecond;
+
+    private final double p50Millis;
+
+    private final double p99Millis;
+
+    private final long errors;
+
+    Result(String label, int concurrency, double requestsPerSecond, double p50Millis, double p99Millis, long errors) {
+      this.label = label;
+      this.concurrency = concurrency;
+      this.requestsPerSecond = requestsPerSecond;
+      this.p50Millis = p50Millis;
+      this.p99Millis = p99Millis;
+      this.errors = errors;
+    }
+
+    public double getRequestsPerSecond() {
+      return requestsPerSecond;
+    }
+
+    public double getP99Millis() {
+      return p99Millis;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    String toCsv() {
+      return String.format("%s,%d,%.0f,%.2f,%.2f,%d", label, concurrency, requestsPerSecond, p50Millis, p99Millis, errors);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-10s concurrency=%5d %10.0f req/s  p50=%8.2f ms  p99=%8.2f ms  errors=%d",
+          label, concurrency, requestsPerSecond, p50Millis, p99Millis, errors);
+    }
+  }
+}